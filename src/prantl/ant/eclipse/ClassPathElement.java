@@ -19,6 +19,7 @@
 
 package prantl.ant.eclipse;
 
+import java.io.File;
 import java.util.Vector;
 
 import org.apache.tools.ant.BuildException;
@@ -43,6 +44,18 @@ public class ClassPathElement {
 
     private ClassPathEntryOutputElement output = null;
 
+    private int threadCount = 1;
+
+    private boolean merge = false;
+
+    private boolean streaming = false;
+
+    private boolean parentPaths = false;
+
+    private String outputRefid = null;
+
+    private File argFile = null;
+
     /**
      * Creates a new instance of the classpath element.
      * 
@@ -106,6 +119,174 @@ public class ClassPathElement {
         return output;
     }
 
+    /**
+     * Returns the maximum number of threads used to resolve the paths of the entries
+     * concurrently (<tt>1</tt> is used as a default, resolving the paths one after
+     * another).
+     * 
+     * @return The maximum number of threads used to resolve the paths.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the maximum number of threads used to resolve the paths of the entries
+     * concurrently. The generated file does not depend on this value.
+     * 
+     * @param value
+     *        A positive number of threads.
+     * @throws BuildException
+     *         If the value is not positive.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setThreadCount(int value) {
+        if (value < 1)
+            throw new BuildException("The attribute \"threadcount\" has an invalid value \""
+                    + value + "\". It must be a positive number.");
+        threadCount = value;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the generated entries should be merged with the existing
+     * file .classpath, keeping the entries added in Eclipse (<tt>false</tt> is used as
+     * a default, replacing the whole file).
+     * 
+     * @return <tt>True</tt> if the existing file should be merged.
+     * @since Ant-Eclipse 1.0
+     */
+    public boolean getMerge() {
+        return merge;
+    }
+
+    /**
+     * Sets if the generated entries should be merged with the existing file .classpath.
+     * Existing entries with the same kind and path as the generated ones are replaced in
+     * place; other entries are kept unless they were generated before.
+     * 
+     * @param value
+     *        <tt>True</tt> if the existing file should be merged.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setMerge(boolean value) {
+        merge = value;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the binary entries should be written directly into the
+     * file .classpath as they are resolved (<tt>false</tt> is used as a default,
+     * collecting all entries before writing them).
+     * 
+     * @return <tt>True</tt> if the entries should be streamed.
+     * @since Ant-Eclipse 1.0
+     */
+    public boolean getStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Sets if the binary entries should be written directly into the file .classpath
+     * instead of collecting them first. The entries are not collected and the content is
+     * not rendered in memory; duplicates are found through a table of the hashes of the
+     * distinct paths, which refers to the first occurrence of every path by two numbers.
+     * The content is written into a temporary file while its fingerprint is computed and
+     * the file is dropped if the fingerprint did not change. The resolved paths are kept
+     * like without streaming, those of path references in the cache shared by the
+     * projects, so that the memory still grows with the number of libraries. The
+     * generated file is the same; the entries are not logged one by one and they are not
+     * available in the resolved model. The content is stored into the cache of generated
+     * files, but it is not taken from it, because the fingerprint is known only after
+     * writing. It cannot be used together with the merge mode.
+     * 
+     * @param value
+     *        <tt>True</tt> if the entries should be streamed.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setStreaming(boolean value) {
+        streaming = value;
+    }
+
+    /**
+     * Returns <tt>true</tt> if paths outside the directory of the project should be
+     * written relative to it with leading <tt>../</tt> segments (<tt>false</tt> is used
+     * as a default, writing paths under the base directory relative to it and other
+     * paths as they are).
+     * 
+     * @return <tt>True</tt> if paths relative to parent directories should be written.
+     * @since Ant-Eclipse 1.0
+     */
+    public boolean getParentPaths() {
+        return parentPaths;
+    }
+
+    /**
+     * Sets if paths outside the directory of the project should be written relative to
+     * it with leading <tt>../</tt> segments. Only paths sharing a directory other than
+     * the root of the file system with the project are written so.
+     * 
+     * @param value
+     *        <tt>True</tt> if paths relative to parent directories should be written.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setParentPaths(boolean value) {
+        parentPaths = value;
+    }
+
+    /**
+     * Returns the identifier of the Ant path reference the resolved libraries should be
+     * published as or <tt>null</tt> if no reference should be created.
+     * 
+     * @return The identifier of the path reference or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    public String getOutputRefid() {
+        return outputRefid;
+    }
+
+    /**
+     * Sets the identifier of the Ant path reference the resolved libraries should be
+     * published as. The path can be referred to by other tasks like <tt>javac</tt> or
+     * <tt>junit</tt> without resolving the filesets again. It is not allowed in the
+     * element shared by the modules of the task <tt>eclipseworkspace</tt>.
+     * 
+     * @param value
+     *        The identifier of the path reference.
+     * @throws BuildException
+     *         If the value is empty.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setOutputRefid(String value) {
+        if (value == null || value.length() == 0)
+            throw new BuildException("The attribute \"outputrefid\" cannot be empty.");
+        outputRefid = value;
+    }
+
+    /**
+     * Returns the file the resolved libraries should be written into as an argument
+     * file of the compiler or <tt>null</tt> if no file should be written.
+     * 
+     * @return The argument file or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    public File getArgFile() {
+        return argFile;
+    }
+
+    /**
+     * Sets the file the resolved libraries should be written into as an argument file
+     * of the compiler. The file contains the option <tt>-classpath</tt> with the
+     * absolute paths of the libraries and can be passed as <tt>@file</tt> to
+     * <tt>javac</tt>. It is written only if its content changed. It is not allowed in
+     * the element shared by the modules of the task <tt>eclipseworkspace</tt>.
+     * 
+     * @param value
+     *        The argument file.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setArgFile(File value) {
+        argFile = value;
+    }
+
     /**
      * Adds a definition of the classpathentry element of the kind "src".
      * 
@@ -0,0 +1,276 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.util.Arrays;
+
+/**
+ * Stores resolved classpath entries of a project in a compact form. The kind of an entry
+ * is stored as a byte together with the flag <tt>exported</tt>, the paths and other
+ * attributes as indexes into a pool of interned paths and strings. Attributes which are
+ * missing in all entries, like the output of sources or the location of javadoc, take
+ * no memory at all. Entries are restored as instances of the class
+ * ResolvedEclipseProject.ClassPathEntry when requested.
+ * <p>
+ * The class ClassPathGenerator collects the entries into the store directly; a binary
+ * entry stored again with the same path replaces the earlier one at its position. The
+ * positions of the binary entries are found by their paths in a table of numbers.
+ * Instances are not synchronized.
+ * </p>
+ * 
+ * @see InternedPathPool
+ * @see ResolvedEclipseProject
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class ClassPathEntryStore {
+
+    private static final String[] KINDS = { "con", "src", "var", "lib", "output" };
+
+    private static final int EXPORTED = 0x80;
+
+    private static final int KIND = 0x7f;
+
+    private final InternedPathPool pool;
+
+    private int count = 0;
+
+    private byte[] kinds = new byte[16];
+
+    private int[] paths = new int[16];
+
+    private int[] sourcePaths = new int[16];
+
+    private int[] javadocLocations;
+
+    private int[] excludings;
+
+    private int[] outputs;
+
+    // the slots contain the positions of the binary entries increased by one, zero marks
+    // an empty slot
+    private int[] slots = new int[32];
+
+    private int binaryCount = 0;
+
+    /**
+     * Creates a new empty store.
+     * 
+     * @param pool
+     *        The pool to intern the paths and strings of the entries in.
+     * @since Ant-Eclipse 1.0
+     */
+    ClassPathEntryStore(InternedPathPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Creates a new store with the specified entries.
+     * 
+     * @param entries
+     *        The entries to store in the order of output.
+     * @param pool
+     *        The pool to intern the paths and strings of the entries in.
+     * @throws IllegalArgumentException
+     *         If an entry has an unknown kind.
+     * @since Ant-Eclipse 1.0
+     */
+    ClassPathEntryStore(ResolvedEclipseProject.ClassPathEntry[] entries,
+            InternedPathPool pool) {
+        this(pool);
+        for (int i = 0; i != entries.length; ++i)
+            add(entries[i]);
+    }
+
+    /**
+     * Appends the specified entry.
+     * 
+     * @param entry
+     *        The entry to append.
+     * @throws IllegalArgumentException
+     *         If the entry has an unknown kind.
+     * @since Ant-Eclipse 1.0
+     */
+    void add(ResolvedEclipseProject.ClassPathEntry entry) {
+        set(count, entry, pool.internPath(entry.path));
+    }
+
+    /**
+     * Stores the specified binary entry. If a binary entry with the same path has been
+     * stored by this method before, it is replaced keeping its position, otherwise the
+     * entry is appended.
+     * 
+     * @param entry
+     *        The entry to store.
+     * @return <tt>True</tt> if an earlier entry was replaced, otherwise <tt>false</tt>.
+     * @throws IllegalArgumentException
+     *         If the entry has an unknown kind.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean put(ResolvedEclipseProject.ClassPathEntry entry) {
+        int path = pool.internPath(entry.path);
+        int slot = find(path);
+        if (slots[slot] != 0) {
+            set(slots[slot] - 1, entry, path);
+            return true;
+        }
+        slots[slot] = count + 1;
+        set(count, entry, path);
+        // keeping the table at most half full makes the probe sequences short
+        if (++binaryCount * 2 > slots.length)
+            rehash();
+        return false;
+    }
+
+    /**
+     * Checks if a binary entry with the specified path has been stored by the method
+     * put.
+     * 
+     * @param path
+     *        The path of the entry.
+     * @return <tt>True</tt> if there is a binary entry with the path, otherwise
+     *         <tt>false</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean contains(String path) {
+        return slots[find(pool.internPath(path))] != 0;
+    }
+
+    /**
+     * Returns the number of the stored entries.
+     * 
+     * @return The number of the entries.
+     * @since Ant-Eclipse 1.0
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns a new object with the entry at the specified position.
+     * 
+     * @param index
+     *        The position of the entry.
+     * @return The entry at the position.
+     * @since Ant-Eclipse 1.0
+     */
+    ResolvedEclipseProject.ClassPathEntry get(int index) {
+        return new ResolvedEclipseProject.ClassPathEntry(KINDS[kinds[index] & KIND],
+                pool.getPath(paths[index]), (kinds[index] & EXPORTED) != 0, pool
+                        .getPath(sourcePaths[index]), pool.getPath(getIndex(
+                        javadocLocations, index)), pool.getString(getIndex(excludings,
+                        index)), pool.getPath(getIndex(outputs, index)));
+    }
+
+    /**
+     * Returns a new array with all entries in the order of output.
+     * 
+     * @return A new array with the entries.
+     * @since Ant-Eclipse 1.0
+     */
+    ResolvedEclipseProject.ClassPathEntry[] toArray() {
+        ResolvedEclipseProject.ClassPathEntry[] result = new ResolvedEclipseProject.ClassPathEntry[count];
+        for (int i = 0; i != result.length; ++i)
+            result[i] = get(i);
+        return result;
+    }
+
+    private void set(int position, ResolvedEclipseProject.ClassPathEntry entry,
+            int path) {
+        byte kind = (byte) (getKindIndex(entry.kind) | (entry.exported ? EXPORTED : 0));
+        if (position == count && count++ == kinds.length)
+            grow();
+        kinds[position] = kind;
+        paths[position] = path;
+        sourcePaths[position] = pool.internPath(entry.sourcePath);
+        javadocLocations = setIndex(javadocLocations, position, pool
+                .internPath(entry.javadocLocation));
+        excludings = setIndex(excludings, position, pool
+                .internString(entry.excluding));
+        outputs = setIndex(outputs, position, pool.internPath(entry.output));
+    }
+
+    private void grow() {
+        int capacity = kinds.length * 2;
+        byte[] array = new byte[capacity];
+        System.arraycopy(kinds, 0, array, 0, kinds.length);
+        kinds = array;
+        paths = copyOf(paths, capacity);
+        sourcePaths = copyOf(sourcePaths, capacity);
+        javadocLocations = copyOf(javadocLocations, capacity);
+        excludings = copyOf(excludings, capacity);
+        outputs = copyOf(outputs, capacity);
+    }
+
+    private int find(int path) {
+        int mask = slots.length - 1;
+        int slot = getHash(path) & mask;
+        while (slots[slot] != 0 && paths[slots[slot] - 1] != path)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        int[] old = slots;
+        slots = new int[old.length * 2];
+        for (int i = 0; i != old.length; ++i)
+            if (old[i] != 0)
+                slots[find(paths[old[i] - 1])] = old[i];
+    }
+
+    // an attribute array is created when the first entry with the attribute is stored
+    private int[] setIndex(int[] indexes, int position, int value) {
+        if (indexes == null) {
+            if (value < 0)
+                return null;
+            indexes = new int[kinds.length];
+            Arrays.fill(indexes, -1);
+        }
+        indexes[position] = value;
+        return indexes;
+    }
+
+    private static int[] copyOf(int[] indexes, int capacity) {
+        if (indexes == null)
+            return null;
+        int[] result = new int[capacity];
+        System.arraycopy(indexes, 0, result, 0, indexes.length);
+        Arrays.fill(result, indexes.length, capacity, -1);
+        return result;
+    }
+
+    private static int getIndex(int[] indexes, int position) {
+        return indexes == null ? -1 : indexes[position];
+    }
+
+    private static int getHash(int path) {
+        int hash = path * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int getKindIndex(String kind) {
+        for (int i = 0; i != KINDS.length; ++i)
+            if (KINDS[i].equals(kind))
+                return i;
+        throw new IllegalArgumentException("The kind of a classpath entry \"" + kind
+                + "\" is not known.");
+    }
+
+}
@@ -19,49 +19,165 @@
 
 package prantl.ant.eclipse;
 
-import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Vector;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 import org.apache.tools.ant.types.Path;
 import org.apache.tools.ant.types.Reference;
+import org.apache.tools.ant.util.FileUtils;
 
 /**
  * Provides the functionality generating the file <tt>.classpath</tt> for the supplied
- * task object. It is expected to be used within the class EclipseTask.
+ * task object. It is expected to be used within the class EclipseTask. The entries are
+ * resolved and collected into a compact store of the class ClassPathEntryStore first,
+ * which is rendered by the class EclipseRenderer then. A binary entry is stored at the
+ * position of the first occurrence of its path, while a later occurrence updates the
+ * attributes of the earlier one.
+ * <p>
+ * The entries are written in the following order: the container, the sources in the
+ * order of their definition, the variables and libraries in the order of their first
+ * occurrence and the output. Paths are made relative to the directory of the project
+ * by the class PathRelativizer. In the reproducible mode the path separators are
+ * normalized to slashes, so that the same inputs produce the same file on all
+ * platforms.
+ * </p>
+ * <p>
+ * The resolved libraries can be published as an Ant path reference and written into an
+ * argument file of the compiler, so that other tasks of the build do not need to
+ * resolve the same filesets again. They are published even if the file
+ * <tt>.classpath</tt> is up-to-date.
+ * </p>
+ * <p>
+ * In the streaming mode the binary entries are not collected. The resolved paths are
+ * passed through a compact index of the hashes of the distinct paths to find
+ * duplicates in a pass before and the entries are written into the file one by one
+ * in a single pass, computing the fingerprint at the same time. The index refers to
+ * the resolved items of the elements, which are kept during the passes; the relative
+ * path of an item is computed again only when its hash matches another one.
+ * </p>
+ * <p>
+ * In the merge mode the generated entries are merged with the existing file by the
+ * class ClassPathMerger and they are marked by the classpath attribute
+ * <tt>ant-eclipse.generated</tt>, so that they can be recognized when they are not
+ * generated any more.
+ * </p>
  * 
  * @see EclipseTask
+ * @see EclipseRenderer
  * @since Ant-Eclipse 1.0
  * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
  */
 final class ClassPathGenerator {
 
     /**
-     * Contains a ready-to write information about a binary classpath entry - element
-     * kinds "lib" or "var". Fields of this class match attributes of the element
-     * <tt>classpath</tt>.
+     * Resolves the path of a single classpath entry element into a list of items. Paths
+     * of source elements given by the attribute <tt>path</tt> are taken literally,
+     * other paths are resolved by Ant. Instances are run by a WorkerPool; the log
+     * messages are buffered to be logged by the generator in the order of the
+     * elements.
      * 
-     * @see ClassPathGenerator#writeProcessedBinaryClassPathEntries(XmlWriter, String,
-     *      Vector)
+     * @see WorkerPool
      * @since Ant-Eclipse 1.0
      * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
      */
-    static class ProcessedBinaryClassPathEntry {
+    static class ResolvedPath implements Runnable {
+
+        EclipseTask task;
+        ClassPathEntryPathElement element;
+        String[] items;
+        Vector messages = new Vector();
+
+        /**
+         * Creates a new instance for the specified element.
+         * 
+         * @param task
+         *        The task to resolve the path in the project of.
+         * @param element
+         *        The element with the path to resolve.
+         * @since Ant-Eclipse 1.0
+         */
+        ResolvedPath(EclipseTask task, ClassPathEntryPathElement element) {
+            this.task = task;
+            this.element = element;
+        }
+
+        /**
+         * Resolves the path and stores its items and the log messages.
+         * 
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            task.runBuffered(new Runnable() {
+
+                public void run() {
+                    resolve();
+                }
+
+            }, messages);
+        }
+
+        private void resolve() {
+            Project project = task.getProject();
+            Reference reference = element.getPathRef();
+            if (reference != null)
+                items = PathCache.getInstance(project).list(task, reference);
+            else if (element instanceof ClassPathEntrySourceElement)
+                items = new String[] { element.getPath() };
+            else {
+                Path path = new Path(project);
+                path.setPath(element.getPath());
+                items = path.list();
+            }
+        }
+
+    }
+
+    /**
+     * Describes a classpath element with binary entries in the streaming mode. The
+     * attributes are shared by all items of the path.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    private static final class BinaryElement {
 
         String kind;
-        String path;
         boolean exported;
-        String sourcepath;
-        String javadoc_location;
+        String source;
+        String javadoc;
+        String[] items;
+
+        BinaryElement(String kind, boolean exported, String source, String javadoc,
+                String[] items) {
+            this.kind = kind;
+            this.exported = exported;
+            this.source = source;
+            this.javadoc = javadoc;
+            this.items = items;
+        }
 
     }
 
     private EclipseTask task;
 
+    private PathRelativizer relativizer;
+
+    // the absolute paths of the binary entries by their relative paths if the libraries
+    // are published
+    private Map locations = null;
+
+    private boolean streaming = false;
+
     /**
      * Creates a new instance of the generating object.
      * 
@@ -74,7 +190,8 @@ final class ClassPathGenerator {
     }
 
     /**
-     * Generates the file <tt>.classpath</tt> using the supplied output object.
+     * Generates the file <tt>.classpath</tt> using the supplied output object. All
+     * paths are resolved first to check if the file is up-to-date before writing it.
      * 
      * @since Ant-Eclipse 1.0
      */
@@ -84,44 +201,322 @@ final class ClassPathGenerator {
             task.log("There was no description of a classpath found.", Project.MSG_WARN);
             return;
         }
+        if (classPath.getStreaming() && classPath.getMerge())
+            throw new BuildException(
+                    "The attributes \"streaming\" and \"merge\" cannot be used together.");
+        relativizer = createRelativizer(classPath);
+        if (classPath.getOutputRefid() != null || classPath.getArgFile() != null)
+            locations = new HashMap();
+        String container = processContainerClassPathEntry();
+        Vector sourceElements = checkSourceClassPathEntries(classPath);
+        Map paths = resolvePaths(classPath, sourceElements);
+        Vector sources = new Vector();
+        processSourceClassPathEntries(sources, sourceElements, paths);
+        if (classPath.getStreaming()) {
+            generateStreaming(classPath, container, sources, paths);
+            return;
+        }
+        ClassPathEntryStore resolved = new ClassPathEntryStore(new InternedPathPool());
+        resolved.add(new ResolvedEclipseProject.ClassPathEntry("con", container));
+        for (int i = 0, size = sources.size(); i != size; ++i)
+            resolved.add((ResolvedEclipseProject.ClassPathEntry) sources.get(i));
+        processVariableClassPathEntries(resolved, classPath.getVariables(), paths);
+        checkClassPathEntries(resolved);
+        processLibraryClassPathEntries(resolved, classPath.getLibraries(), paths);
+        resolved.add(new ResolvedEclipseProject.ClassPathEntry("output",
+                processOutputClassPathEntry()));
+        logBinaryClassPathEntries(resolved);
+        task.setResolvedClassPath(resolved);
+        publishLibraries(classPath, resolved);
         EclipseOutput output = task.getOutput();
-        if (output.isClassPathUpToDate()) {
+        boolean merge = classPath.getMerge();
+        String fingerprint = getFingerprint(resolved, merge);
+        if (output.isClassPathUpToDate(fingerprint)) {
             task.log("The classpath definition is up-to-date.", Project.MSG_WARN);
             return;
         }
         task.log("Writing the classpath definition.");
-        XmlWriter writer = null;
+        byte[] content;
+        // the merged content depends on the existing file, it cannot be cached
+        if (merge)
+            content = EclipseRenderer.renderMergedClassPath(merge(resolved));
+        else {
+            content = task.getCachedContent(fingerprint);
+            if (content == null) {
+                content = EclipseRenderer.renderClassPath(resolved);
+                task.cacheContent(fingerprint, content);
+            }
+        }
         try {
-            writer = new XmlWriter(new OutputStreamWriter(new BufferedOutputStream(output
-                    .createClassPath()), "UTF-8"));
-            writer.writeXmlDeclaration("UTF-8");
-            writer.openElement("classpath");
-            checkClassPathEntries(classPath);
-            generateContainerClassPathEntry(writer);
-            generateSourceClassPathEntries(writer);
-            Vector entries = new Vector();
-            processVariableClassPathEntries(entries, classPath.getVariables());
-            processLibraryClassPathEntries(entries, classPath.getLibraries());
-            writeProcessedBinaryClassPathEntries(writer, entries);
-            generateOutputClassPathEntry(writer);
-            writer.closeElement("classpath");
-        } catch (UnsupportedEncodingException exception) {
-            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+            int result = output.updateClassPath(content);
+            task.fileUpdated(".classpath", result);
+            task.log("The classpath definition was " + EclipseOutput.getResultName(result)
+                    + ".");
         } catch (IOException exception) {
             throw new BuildException("Writing the classpath definition failed.",
                     exception);
-        } finally {
-            if (writer != null)
-                try {
-                    writer.close();
-                } catch (IOException exception1) {
-                    throw new BuildException("Closing the classpath definition failed.",
-                            exception1);
+        }
+    }
+
+    private void logBinaryClassPathEntries(ClassPathEntryStore entries) {
+        for (int i = 0, size = entries.size(); i != size; ++i) {
+            ResolvedEclipseProject.ClassPathEntry entry = entries.get(i);
+            if (entry.kind.equals("var") || entry.kind.equals("lib"))
+                task.log("Adding binary dependency \"" + entry.path + "\" of the kind \""
+                        + entry.kind + "\".", Project.MSG_VERBOSE);
+        }
+    }
+
+    private void publishLibraries(ClassPathElement classPath,
+            ClassPathEntryStore entries) {
+        if (classPath.getOutputRefid() == null && classPath.getArgFile() == null)
+            return;
+        Vector libraries = new Vector();
+        for (int i = 0, size = entries.size(); i != size; ++i) {
+            ResolvedEclipseProject.ClassPathEntry entry = entries.get(i);
+            collectLibrary(libraries, entry, (String) locations.get(entry.path));
+        }
+        publishLibraries(classPath, libraries);
+    }
+
+    private void collectLibrary(Vector libraries,
+            ResolvedEclipseProject.ClassPathEntry entry, String location) {
+        // variables are resolved by Eclipse, they do not denote files; the paths of the
+        // entries are relative to the directory of the project, which may not be the
+        // base directory, the location is the path before relativizing
+        if (entry.kind.equals("lib"))
+            libraries.addElement(task.getProject().resolveFile(location));
+    }
+
+    private void publishLibraries(ClassPathElement classPath, Vector libraries) {
+        String refid = classPath.getOutputRefid();
+        File argFile = classPath.getArgFile();
+        Project project = task.getProject();
+        if (refid != null) {
+            Path path = new Path(project);
+            for (int i = 0, size = libraries.size(); i != size; ++i)
+                path.createPathElement().setLocation((File) libraries.get(i));
+            task.log("Publishing " + libraries.size()
+                    + " libraries as the path reference \"" + refid + "\".",
+                    Project.MSG_VERBOSE);
+            project.addReference(refid, path);
+        }
+        if (argFile != null)
+            writeArgFile(argFile, libraries);
+    }
+
+    private void writeArgFile(File file, Vector libraries) {
+        StringBuffer buffer = new StringBuffer("-classpath \"");
+        for (int i = 0, size = libraries.size(); i != size; ++i) {
+            if (i != 0)
+                buffer.append(File.pathSeparatorChar);
+            // backslashes and quotes are escaped inside a quoted argument of javac
+            String path = ((File) libraries.get(i)).getAbsolutePath();
+            for (int j = 0, length = path.length(); j != length; ++j) {
+                char character = path.charAt(j);
+                if (character == '\\' || character == '"')
+                    buffer.append('\\');
+                buffer.append(character);
+            }
+        }
+        buffer.append("\"\n");
+        try {
+            byte[] content = buffer.toString().getBytes("UTF-8");
+            int result;
+            if (!file.isFile())
+                result = EclipseOutput.CREATED;
+            else if (!Arrays.equals(content, WorkspacePreferences.readFile(file)))
+                result = EclipseOutput.CHANGED;
+            else
+                result = EclipseOutput.UNCHANGED;
+            if (result != EclipseOutput.UNCHANGED)
+                WorkspacePreferences.writeFile(file, content);
+            task.log("The argument file \"" + file.getPath() + "\" with "
+                    + libraries.size() + " libraries was "
+                    + EclipseOutput.getResultName(result) + ".");
+        } catch (IOException exception) {
+            throw new BuildException("Writing the argument file failed.", exception);
+        }
+    }
+
+    private Vector merge(ClassPathEntryStore entries) {
+        Map generated = new LinkedHashMap();
+        for (int i = 0, size = entries.size(); i != size; ++i) {
+            ResolvedEclipseProject.ClassPathEntry entry = entries.get(i);
+            String key = ClassPathMerger.getKey(entry.kind, entry.path);
+            if (!generated.containsKey(key))
+                generated.put(key, entry);
+        }
+        try {
+            return ClassPathMerger.merge(task.getOutput().openClassPath(), generated);
+        } catch (IOException exception) {
+            throw new BuildException("Reading the classpath definition failed.",
+                    exception);
+        }
+    }
+
+    private String getFingerprint(ClassPathEntryStore entries, boolean merge) {
+        Fingerprint fingerprint = new Fingerprint("classpath").add(
+                task.getEclipse().getMode().getValue()).add(
+                task.getEclipse().isReproducible()).add(merge);
+        for (int i = 0, size = entries.size(); i != size; ++i)
+            addFingerprint(fingerprint, entries.get(i));
+        return fingerprint.getValue();
+    }
+
+    private static void addFingerprint(Fingerprint fingerprint,
+            ResolvedEclipseProject.ClassPathEntry entry) {
+        fingerprint.add(entry.kind).add(entry.path).add(entry.exported).add(
+                entry.sourcePath).add(entry.javadocLocation).add(entry.excluding).add(
+                entry.output);
+    }
+
+    private void generateStreaming(ClassPathElement classPath, final String container,
+            final Vector sources, Map paths) {
+        final String outputPath = processOutputClassPathEntry();
+        // the paths are processed in every pass, logging them would repeat every line
+        streaming = true;
+        final Vector elements = new Vector();
+        addBinaryElements(elements, "var", classPath.getVariables(), paths);
+        int variableCount = elements.size();
+        addBinaryElements(elements, "lib", classPath.getLibraries(), paths);
+        int capacity = 1;
+        for (int i = 0, size = elements.size(); i != size; ++i)
+            capacity += ((BinaryElement) elements.get(i)).items.length;
+        PathHashIndex.Paths source = new PathHashIndex.Paths() {
+
+            String getPath(int element, int item) {
+                return processPath(((BinaryElement) elements.get(element)).items[item]);
+            }
+
+        };
+        final PathHashIndex index = new PathHashIndex(capacity, source);
+        indexBinaryElements(elements, 0, variableCount, index);
+        if (task.getEclipse().getMode().getIndex() == EclipseElement.Mode.ASPECTJ
+                && !index.contains(PathHashIndex.hash("ASPECTJRT_LIB"),
+                        "ASPECTJRT_LIB")) {
+            elements.insertElementAt(new BinaryElement("var", false, "ASPECTJRT_SRC",
+                    null, new String[] { "ASPECTJRT_LIB" }), variableCount);
+            indexBinaryElements(elements, variableCount, ++variableCount, index);
+        }
+        indexBinaryElements(elements, variableCount, elements.size(), index);
+        task.log("Streaming " + index.size() + " distinct binary entries.",
+                Project.MSG_VERBOSE);
+        final Fingerprint fingerprint = new Fingerprint("classpath").add(
+                task.getEclipse().getMode().getValue()).add(
+                task.getEclipse().isReproducible()).add(false);
+        final Vector libraries = classPath.getOutputRefid() == null
+                && classPath.getArgFile() == null ? null : new Vector();
+        final EclipseOutput output = task.getOutput();
+        final boolean[] upToDate = new boolean[1];
+        int result;
+        try {
+            // the fingerprint is known only after the entries have been written, the
+            // written content is dropped if the file is up-to-date
+            result = output.updateClassPath(new EclipseOutput.ContentWriter() {
+
+                boolean write(OutputStream stream) throws IOException {
+                    writeClassPath(stream, container, sources, elements, index,
+                            outputPath, fingerprint, libraries);
+                    upToDate[0] = output.isClassPathUpToDate(fingerprint.getValue());
+                    return !upToDate[0];
                 }
+
+            });
+        } catch (IOException exception) {
+            throw new BuildException("Writing the classpath definition failed.",
+                    exception);
+        }
+        if (libraries != null)
+            publishLibraries(classPath, libraries);
+        if (upToDate[0]) {
+            task.log("The classpath definition is up-to-date.", Project.MSG_WARN);
+            return;
+        }
+        task.log("Writing the classpath definition.");
+        task.fileUpdated(".classpath", result);
+        task.log("The classpath definition was " + EclipseOutput.getResultName(result)
+                + ".");
+        if (task.isCaching()) {
+            InputStream content = output.openClassPath();
+            if (content != null)
+                task.cacheContent(fingerprint.getValue(), content);
+        }
+    }
+
+    private void writeClassPath(OutputStream stream, String container, Vector sources,
+            Vector elements, PathHashIndex index, String outputPath,
+            Fingerprint fingerprint, Vector libraries) throws IOException {
+        XmlWriter writer = new XmlWriter(new OutputStreamWriter(stream, "UTF-8"));
+        writer.writeXmlDeclaration("UTF-8");
+        writer.openElement("classpath");
+        writeClassPathEntry(writer, fingerprint,
+                new ResolvedEclipseProject.ClassPathEntry("con", container));
+        for (int i = 0, size = sources.size(); i != size; ++i)
+            writeClassPathEntry(writer, fingerprint,
+                    (ResolvedEclipseProject.ClassPathEntry) sources.get(i));
+        for (int i = 0, size = elements.size(); i != size; ++i) {
+            String[] items = ((BinaryElement) elements.get(i)).items;
+            for (int j = 0; j != items.length; ++j) {
+                String path = processPath(items[j]);
+                // an entry is written at its first occurrence with the attributes of
+                // its last one, like the store of the collected entries does
+                int last = index.getLast(PathHashIndex.hash(path), path, i, j);
+                if (last < 0)
+                    continue;
+                BinaryElement element = (BinaryElement) elements.get(last);
+                ResolvedEclipseProject.ClassPathEntry entry = new ResolvedEclipseProject.ClassPathEntry(
+                        element.kind, path, element.exported, element.source,
+                        element.javadoc, null, null);
+                writeClassPathEntry(writer, fingerprint, entry);
+                if (libraries != null)
+                    collectLibrary(libraries, entry, items[j]);
+            }
+        }
+        writeClassPathEntry(writer, fingerprint,
+                new ResolvedEclipseProject.ClassPathEntry("output", outputPath));
+        writer.closeElement("classpath");
+        writer.close();
+    }
+
+    private static void writeClassPathEntry(XmlWriter writer, Fingerprint fingerprint,
+            ResolvedEclipseProject.ClassPathEntry entry) throws IOException {
+        addFingerprint(fingerprint, entry);
+        EclipseRenderer.writeClassPathEntry(writer, entry, false);
+    }
+
+    private void addBinaryElements(Vector elements, String kind, Vector binaries,
+            Map paths) {
+        for (int i = 0, size = binaries.size(); i != size; ++i) {
+            ClassPathEntryBinaryElement entry = (ClassPathEntryBinaryElement) binaries
+                    .get(i);
+            elements.addElement(new BinaryElement(kind, entry.getExported(),
+                    normalizePath(entry.getSource()), entry.getJavadoc(), (String[]) paths
+                            .get(entry)));
+        }
+    }
+
+    private void indexBinaryElements(Vector elements, int from, int to,
+            PathHashIndex index) {
+        for (int i = from; i != to; ++i) {
+            String[] items = ((BinaryElement) elements.get(i)).items;
+            for (int j = 0; j != items.length; ++j) {
+                String path = processPath(items[j]);
+                index.put(PathHashIndex.hash(path), path, i, j);
+            }
         }
     }
 
-    private void generateContainerClassPathEntry(XmlWriter writer) throws IOException {
+    private PathRelativizer createRelativizer(ClassPathElement classPath) {
+        // the files of the project are written into the same directory by the output
+        File baseDirectory = task.getProject().getBaseDir();
+        File projectDirectory = FileUtils.getFileUtils().resolveFile(baseDirectory,
+                task.getEclipse().getDestDir().getName());
+        return new PathRelativizer(projectDirectory, baseDirectory, classPath
+                .getParentPaths());
+    }
+
+    private String processContainerClassPathEntry() {
         ClassPathEntryContainerElement container = task.getEclipse().getClassPath()
                 .getContainer();
         if (container == null) {
@@ -138,134 +533,102 @@ final class ClassPathGenerator {
                     + path;
         }
         task.log("Adding container \"" + path + "\".", Project.MSG_VERBOSE);
-        openClassPathEntry(writer, "con", path);
-        writer.closeDegeneratedElement();
+        return path;
     }
 
-    private void generateSourceClassPathEntries(XmlWriter writer) throws IOException {
-        Vector entries = task.getEclipse().getClassPath().getSources();
-        if (entries.size() == 0) {
+    private Vector checkSourceClassPathEntries(ClassPathElement classPath) {
+        Vector sources = new Vector(classPath.getSources());
+        if (sources.size() == 0) {
             task
                     .log("No source found, the current directory added.",
                             Project.MSG_VERBOSE);
-            entries.addElement(new ClassPathEntrySourceElement());
+            sources.addElement(new ClassPathEntrySourceElement());
         }
+        return sources;
+    }
+
+    private Map resolvePaths(ClassPathElement classPath, Vector sources) {
+        Vector elements = new Vector(sources);
+        elements.addAll(classPath.getVariables());
+        elements.addAll(classPath.getLibraries());
+        ResolvedPath[] paths = new ResolvedPath[elements.size()];
+        for (int i = 0; i != paths.length; ++i) {
+            ClassPathEntryPathElement element = (ClassPathEntryPathElement) elements.get(i);
+            element.validate();
+            paths[i] = new ResolvedPath(task, element);
+        }
+        int threadCount = classPath.getThreadCount();
+        if (threadCount > 1)
+            task.log("Resolving " + paths.length + " paths using up to " + threadCount
+                    + " threads.", Project.MSG_VERBOSE);
+        WorkerPool.run(paths, threadCount);
+        Map result = new HashMap();
+        for (int i = 0; i != paths.length; ++i) {
+            task.logBuffered(paths[i].messages);
+            result.put(paths[i].element, paths[i].items);
+        }
+        return result;
+    }
+
+    private void processSourceClassPathEntries(Vector sources, Vector entries,
+            Map paths) {
         for (int i = 0, size = entries.size(); i != size; ++i) {
             ClassPathEntrySourceElement entry = (ClassPathEntrySourceElement) entries
                     .get(i);
-            entry.validate();
             String excluding = entry.getExcluding();
             String output = entry.getOutput();
-            Path path = new Path(task.getProject());
-            Reference reference = entry.getPathRef();
-            String[] items = path.list();
-            if (reference != null) {
-                path.setRefid(reference);
-                items = path.list();
-            } else {
-                String value = entry.getPath();
-                if (value.length() == 0)
-                    task.log("Using the current directory as a default source path.",
-                            Project.MSG_VERBOSE);
-                items = new String[] { value };
-            }
-            String baseDirectory = task.getProject().getBaseDir().getAbsolutePath();
+            if (entry.getPathRef() == null && entry.getPath().length() == 0)
+                task.log("Using the current directory as a default source path.",
+                        Project.MSG_VERBOSE);
+            String[] items = (String[]) paths.get(entry);
             for (int j = 0; j != items.length; ++j) {
-                String item = cutBaseDirectory(items[j], baseDirectory);
+                String item = processPath(items[j]);
                 task.log("Adding sources from \"" + item + "\".", Project.MSG_VERBOSE);
-                openClassPathEntry(writer, "src", item);
-                if (excluding != null)
-                    writer.appendAttribute("excluding", excluding);
-                if (output != null)
-                    writer.appendAttribute("output", output);
-                writer.closeDegeneratedElement();
+                sources.addElement(new ResolvedEclipseProject.ClassPathEntry("src", item,
+                        false, null, null, excluding, output));
             }
         }
     }
 
-    private void processVariableClassPathEntries(Vector entries, Vector paths) {
-        processBinaryClassPathEntries(entries, "var", paths);
+    private void processVariableClassPathEntries(ClassPathEntryStore entries,
+            Vector variables, Map paths) {
+        processBinaryClassPathEntries(entries, "var", variables, paths);
     }
 
-    private void processLibraryClassPathEntries(Vector entries, Vector paths) {
-        processBinaryClassPathEntries(entries, "lib", paths);
+    private void processLibraryClassPathEntries(ClassPathEntryStore entries,
+            Vector libraries, Map paths) {
+        processBinaryClassPathEntries(entries, "lib", libraries, paths);
     }
 
-    private void processBinaryClassPathEntries(Vector entries, String kind,
-            Vector binaries) {
+    private void processBinaryClassPathEntries(ClassPathEntryStore entries, String kind,
+            Vector binaries, Map paths) {
         for (int i = 0, size = binaries.size(); i != size; ++i) {
             ClassPathEntryBinaryElement entry = (ClassPathEntryBinaryElement) binaries
                     .get(i);
-            entry.validate();
-            Path path = new Path(task.getProject());
-            Reference reference = entry.getPathRef();
-            if (reference != null)
-                path.setRefid(reference);
-            else {
-                String value = entry.getPath();
-                path.setPath(value);
-            }
-            processBinaryClassPathEntries(entries, kind, entry.getExported(), entry
-                    .getSource(), entry.getJavadoc(), path.list());
+            processBinaryClassPathEntries(entries, kind, entry.getExported(),
+                    normalizePath(entry.getSource()), entry.getJavadoc(),
+                    (String[]) paths.get(entry));
         }
     }
 
-    private void processBinaryClassPathEntries(Vector entries, String kind,
+    private void processBinaryClassPathEntries(ClassPathEntryStore entries, String kind,
             boolean exported, String source, String javadoc_location, String[] items) {
-        String baseDirectory = task.getProject().getBaseDir().getAbsolutePath();
         for (int j = 0; j != items.length; ++j) {
-            String item = cutBaseDirectory(items[j], baseDirectory);
-            ProcessedBinaryClassPathEntry element = getProcessedBinaryClassPathEntry(
-                    entries, item);
-            if (element == null) {
-                task.log("Processing binary dependency \"" + item + "\" of the kind \""
-                        + kind + "\".", Project.MSG_VERBOSE);
-                element = new ProcessedBinaryClassPathEntry();
-                element.kind = kind;
-                element.path = item;
-                element.exported = exported;
-                element.sourcepath = source;
-                element.javadoc_location = javadoc_location;
-                entries.addElement(element);
-            } else {
+            String item = processPath(items[j]);
+            // replacing the entry keeps the position of the first occurrence
+            if (entries.put(new ResolvedEclipseProject.ClassPathEntry(kind, item,
+                    exported, source, javadoc_location, null, null)))
                 task.log("Updating binary dependency \"" + item + "\" of the kind \""
                         + kind + "\".", Project.MSG_VERBOSE);
-                element.kind = kind;
-                element.path = item;
-                element.exported = exported;
-                element.sourcepath = source;
-                element.javadoc_location = javadoc_location;
-            }
-        }
-    }
-
-    private void writeProcessedBinaryClassPathEntries(XmlWriter writer, Vector entries)
-            throws IOException {
-        for (int i = 0, size = entries.size(); i != size; ++i) {
-            ProcessedBinaryClassPathEntry element = (ProcessedBinaryClassPathEntry) entries
-                    .get(i);
-            task.log("Adding binary dependency \"" + element.path + "\" of the kind \""
-                    + element.kind + "\".", Project.MSG_VERBOSE);
-            openClassPathEntry(writer, element.kind, element.path);
-            if (element.exported)
-                writer.appendAttribute("exported", "true");
-            if (element.sourcepath != null)
-                writer.appendAttribute("sourcepath", element.sourcepath);
-            if (element.javadoc_location != null) {
-                writer.closeOpeningTag();
-                writer.openElement("attributes");
-                writer.openOpeningTag("attribute");
-                writer.appendAttribute("value", element.javadoc_location);
-                writer.appendAttribute("name", "javadoc_location");
-                writer.closeDegeneratedElement();
-                writer.closeElement("attributes");
-                writer.closeElement("classpathentry");
-            } else
-                writer.closeDegeneratedElement();
+            else
+                task.log("Processing binary dependency \"" + item + "\" of the kind \""
+                        + kind + "\".", Project.MSG_VERBOSE);
+            if (locations != null)
+                locations.put(item, items[j]);
         }
     }
 
-    private void generateOutputClassPathEntry(XmlWriter writer) throws IOException {
+    private String processOutputClassPathEntry() {
         ClassPathEntryOutputElement output = task.getEclipse().getClassPath().getOutput();
         if (output == null) {
             task
@@ -274,54 +637,34 @@ final class ClassPathGenerator {
             output = new ClassPathEntryOutputElement();
         }
         output.validate();
-        String path = cutBaseDirectory(output.getPath(), task.getProject().getBaseDir()
-                .getAbsolutePath());
+        String path = processPath(output.getPath());
         task.log("Adding output into \"" + path + "\".", Project.MSG_VERBOSE);
-        openClassPathEntry(writer, "output", path);
-        writer.closeDegeneratedElement();
+        return path;
     }
 
-    private void openClassPathEntry(XmlWriter writer, String kind, String path)
-            throws IOException {
-        writer.openOpeningTag("classpathentry");
-        writer.appendAttribute("kind", kind);
-        writer.appendAttribute("path", path);
+    private String processPath(String path) {
+        return normalizePath(relativizePath(path));
     }
 
-    private String cutBaseDirectory(String path, String base) {
-        if (!path.startsWith(base))
+    private String normalizePath(String path) {
+        if (path == null || !task.getEclipse().isReproducible())
             return path;
-        task.log("Cutting base directory \"" + base + "\" from the path \"" + path
-                + "\".", Project.MSG_VERBOSE);
-        return path.substring(base.length() + 1);
+        return path.replace('\\', '/');
     }
 
-    private void checkClassPathEntries(ClassPathElement classPath) {
-        if (task.getEclipse().getMode().getIndex() == EclipseElement.Mode.ASPECTJ
-                && getClassPathEntry(classPath.getVariables(), "ASPECTJRT_LIB") == null) {
-            ClassPathEntryVariableElement variable = classPath.createVariable();
-            variable.setPath("ASPECTJRT_LIB");
-            variable.setSource("ASPECTJRT_SRC");
-        }
+    private String relativizePath(String path) {
+        String result = relativizer.relativize(path);
+        if (result != path && !streaming)
+            task.log("Relativizing the path \"" + path + "\" to \"" + result + "\".",
+                    Project.MSG_VERBOSE);
+        return result;
     }
 
-    private static ClassPathEntryElement getClassPathEntry(Vector entries, String path) {
-        for (int i = 0, size = entries.size(); i != size; ++i) {
-            ClassPathEntryElement entry = (ClassPathEntryElement) entries.get(i);
-            if (path.equals(entry.getPath()))
-                return entry;
-        }
-        return null;
+    private void checkClassPathEntries(ClassPathEntryStore entries) {
+        if (task.getEclipse().getMode().getIndex() == EclipseElement.Mode.ASPECTJ
+                && !entries.contains("ASPECTJRT_LIB"))
+            processBinaryClassPathEntries(entries, "var", false, "ASPECTJRT_SRC", null,
+                    new String[] { "ASPECTJRT_LIB" });
     }
 
-    private static ProcessedBinaryClassPathEntry getProcessedBinaryClassPathEntry(
-            Vector entries, String path) {
-        for (int i = 0, size = entries.size(); i < size; ++i) {
-            ProcessedBinaryClassPathEntry entry = (ProcessedBinaryClassPathEntry) entries
-                    .get(i);
-            if (entry.path.equals(path))
-                return entry;
-        }
-        return null;
-    }
 }
@@ -0,0 +1,276 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Vector;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.tools.ant.BuildException;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Merges the generated entries of the file <tt>.classpath</tt> with the existing
+ * content of the file, keeping the entries added in Eclipse. It is expected to be used
+ * within the class ClassPathGenerator.
+ * <p>
+ * The existing file is read by a SAX parser. An existing entry is owned by the generator
+ * if it has the same kind and path as a generated entry, if it is the output entry or
+ * if it carries the attribute <tt>ant-eclipse.generated</tt>, which is written to all
+ * generated entries in the merge mode. An owned entry is replaced by the generated one
+ * in place or dropped, if it is not generated any more. Other entries are kept with
+ * their attributes and nested elements. Generated entries which were not present are
+ * inserted after the generated entry preceding them. Only the entries which are kept
+ * are recorded during parsing.
+ * </p>
+ * 
+ * @see ClassPathGenerator
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class ClassPathMerger {
+
+    /**
+     * The name of the classpath attribute marking the entries written by the generator.
+     */
+    static final String GENERATED_ATTRIBUTE = "ant-eclipse.generated";
+
+    private static final Object END_ELEMENT = new Object();
+
+    private static SAXParserFactory factory = SAXParserFactory.newInstance();
+
+    /**
+     * Contains an existing entry which is not owned by the generator and will be written
+     * back unchanged. The events contain arrays with the element name followed by pairs
+     * of attribute names and values for the opening tags, strings for text and a marker
+     * for the closing tags.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static class KeptEntry {
+
+        Vector events = new Vector();
+        boolean generated;
+
+    }
+
+    /**
+     * Parses the existing file and separates owned entries from the kept ones.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    private static class Handler extends DefaultHandler {
+
+        Map generated;
+        String outputKey;
+        Vector result = new Vector();
+        KeptEntry current;
+        int level;
+
+        Handler(Map generated) {
+            this.generated = generated;
+            for (Iterator iterator = generated.keySet().iterator(); iterator.hasNext();) {
+                String key = (String) iterator.next();
+                if (key.startsWith(getKey("output", "")))
+                    outputKey = key;
+            }
+        }
+
+        public void startElement(String uri, String localName, String name,
+                Attributes attributes) {
+            ++level;
+            if (level == 2 && "classpathentry".equals(name)) {
+                String kind = attributes.getValue("kind");
+                String key = getKey(kind, attributes.getValue("path"));
+                // there is only one output, which is replaced even if its path differs
+                if ("output".equals(kind) && outputKey != null)
+                    key = outputKey;
+                if (generated.containsKey(key)) {
+                    result.addElement(key);
+                    return;
+                }
+                current = new KeptEntry();
+            } else if (current == null)
+                return;
+            else if ("attribute".equals(name)
+                    && GENERATED_ATTRIBUTE.equals(attributes.getValue("name")))
+                current.generated = true;
+            String[] event = new String[attributes.getLength() * 2 + 1];
+            event[0] = name;
+            for (int i = 0, length = attributes.getLength(); i != length; ++i) {
+                event[i * 2 + 1] = attributes.getQName(i);
+                event[i * 2 + 2] = attributes.getValue(i);
+            }
+            current.events.addElement(event);
+        }
+
+        public void endElement(String uri, String localName, String name) {
+            --level;
+            if (current == null)
+                return;
+            current.events.addElement(END_ELEMENT);
+            if (level == 1) {
+                if (!current.generated)
+                    result.addElement(current);
+                current = null;
+            }
+        }
+
+        public void characters(char[] buffer, int start, int length) {
+            if (current == null)
+                return;
+            String text = new String(buffer, start, length);
+            if (text.trim().length() != 0)
+                current.events.addElement(text);
+        }
+
+    }
+
+    private ClassPathMerger() {
+    }
+
+    /**
+     * Returns the key identifying an entry in the file <tt>.classpath</tt>.
+     * 
+     * @param kind
+     *        The kind of the entry.
+     * @param path
+     *        The path of the entry.
+     * @return The key of the entry.
+     * @since Ant-Eclipse 1.0
+     */
+    static String getKey(String kind, String path) {
+        return kind + '\0' + path;
+    }
+
+    /**
+     * Merges the generated entries with the entries of the existing file.
+     * 
+     * @param input
+     *        The stream with the existing file or <tt>null</tt> if there is none; it is
+     *        closed.
+     * @param generated
+     *        The generated entries in the order of output keyed by the result of the
+     *        method getKey.
+     * @return A new list with the generated entries and the instances of the class
+     *         KeptEntry in the order of output.
+     * @throws IOException
+     *         If there was an error reading the file.
+     * @since Ant-Eclipse 1.0
+     */
+    static Vector merge(InputStream input, Map generated) throws IOException {
+        if (input == null)
+            return new Vector(generated.values());
+        Handler handler = new Handler(generated);
+        try {
+            factory.newSAXParser().parse(new InputSource(input), handler);
+        } catch (ParserConfigurationException exception) {
+            throw new BuildException("Creating the XML parser failed.", exception);
+        } catch (SAXException exception) {
+            throw new BuildException("Parsing the classpath definition failed.",
+                    exception);
+        } finally {
+            input.close();
+        }
+        // the new entries are written after the owned entry preceding them in the
+        // generated order, the entries without such one at the beginning
+        Object[] keys = generated.keySet().toArray();
+        HashSet owned = new HashSet(handler.result);
+        HashMap following = new HashMap();
+        Vector pending = new Vector();
+        Object previous = null;
+        for (int i = 0; i != keys.length; ++i)
+            if (owned.contains(keys[i])) {
+                if (pending.size() != 0) {
+                    following.put(previous, pending);
+                    pending = new Vector();
+                }
+                previous = keys[i];
+            } else
+                pending.addElement(generated.get(keys[i]));
+        if (pending.size() != 0)
+            following.put(previous, pending);
+        Vector result = new Vector(handler.result.size() + keys.length);
+        if (following.containsKey(null))
+            result.addAll((Vector) following.get(null));
+        HashSet written = new HashSet();
+        for (int i = 0, size = handler.result.size(); i != size; ++i) {
+            Object item = handler.result.get(i);
+            if (!(item instanceof String))
+                result.addElement(item);
+            // the duplicates are dropped
+            else if (written.add(item)) {
+                result.addElement(generated.get(item));
+                if (following.containsKey(item))
+                    result.addAll((Vector) following.get(item));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes an entry which was kept from the existing file.
+     * 
+     * @param writer
+     *        The XML output to write into.
+     * @param entry
+     *        The kept entry.
+     * @throws IOException
+     *         If there was an error writing the entry.
+     * @since Ant-Eclipse 1.0
+     */
+    static void write(XmlWriter writer, KeptEntry entry) throws IOException {
+        Vector events = entry.events;
+        Vector names = new Vector();
+        for (int i = 0, size = events.size(); i != size; ++i) {
+            Object event = events.get(i);
+            if (event == END_ELEMENT)
+                writer.closeElement((String) names.remove(names.size() - 1));
+            else if (event instanceof String)
+                writer.writeText((String) event);
+            else {
+                String[] element = (String[]) event;
+                writer.openOpeningTag(element[0]);
+                for (int j = 1; j < element.length; j += 2)
+                    writer.appendAttribute(element[j], element[j + 1]);
+                if (events.get(i + 1) == END_ELEMENT) {
+                    writer.closeDegeneratedElement();
+                    ++i;
+                } else {
+                    writer.closeOpeningTag();
+                    names.addElement(element[0]);
+                }
+            }
+        }
+    }
+
+}
@@ -62,12 +62,20 @@ public class EclipseElement {
 
     private boolean updateAlways = false;
 
+    private boolean parallel = false;
+
+    private boolean reproducible = false;
+
     private boolean failOnError = true;
 
     private String errorProperty = null;
 
     private File destDir = new File(".");
 
+    private File cacheDir = null;
+
+    private File modelFile = null;
+
     private Mode mode;
 
     private SettingsElement settings = null;
@@ -101,6 +109,36 @@ public class EclipseElement {
         updateAlways = flag;
     }
 
+    /**
+     * @return Returns the parallel.
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param flag
+     *        The parallel to set.
+     */
+    public void setParallel(boolean flag) {
+        parallel = flag;
+    }
+
+    /**
+     * @return Returns the reproducible.
+     */
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * @param flag
+     *        The reproducible to set.
+     */
+    public void setReproducible(boolean flag) {
+        reproducible = flag;
+    }
+
     /**
      * @return Returns the destDir.
      */
@@ -116,6 +154,36 @@ public class EclipseElement {
         destDir = dir;
     }
 
+    /**
+     * @return Returns the cacheDir.
+     */
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * @param dir
+     *        The cacheDir to set.
+     */
+    public void setCacheDir(File dir) {
+        cacheDir = dir;
+    }
+
+    /**
+     * @return Returns the modelFile.
+     */
+    public File getModelFile() {
+        return modelFile;
+    }
+
+    /**
+     * @param file
+     *        The modelFile to set.
+     */
+    public void setModelFile(File file) {
+        modelFile = file;
+    }
+
     /**
      * @return Returns the failOnError.
      */
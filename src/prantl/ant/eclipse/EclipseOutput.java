@@ -19,6 +19,9 @@
 
 package prantl.ant.eclipse;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
@@ -33,6 +36,49 @@ import java.io.OutputStream;
  */
 abstract class EclipseOutput {
 
+    /**
+     * Writes the content of a file into a stream piece by piece, so that the whole
+     * content does not need to be kept in memory.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static abstract class ContentWriter {
+
+        /**
+         * Writes the content into the specified stream. The stream is closed by the
+         * caller. The writer can decide to drop the written content, for example if it
+         * finds the file up-to-date only after having written it.
+         * 
+         * @param output
+         *        The stream to write the content into.
+         * @return <tt>True</tt> if the written content should be used, <tt>false</tt>
+         *         if it should be dropped leaving the file untouched.
+         * @throws IOException
+         *         If there was an error writing the content.
+         * @since Ant-Eclipse 1.0
+         */
+        abstract boolean write(OutputStream output) throws IOException;
+
+    }
+
+    /**
+     * Result of an update of a file which did not exist before.
+     */
+    static final int CREATED = 0;
+
+    /**
+     * Result of an update of a file which existed with a different content.
+     */
+    static final int CHANGED = 1;
+
+    /**
+     * Result of an update of a file which existed with the same content already.
+     */
+    static final int UNCHANGED = 2;
+
+    private static final String[] RESULT_NAMES = { "created", "changed", "unchanged" };
+
     private EclipseElement eclipse;
 
     /**
@@ -56,32 +102,66 @@ abstract class EclipseOutput {
         return eclipse;
     }
 
+    /**
+     * Returns a name of the result of an update to be used in the log output.
+     * 
+     * @param result
+     *        One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *        <tt>UNCHANGED</tt>.
+     * @return A name of the result of an update.
+     * @since Ant-Eclipse 1.0
+     */
+    static String getResultName(int result) {
+        return RESULT_NAMES[result];
+    }
+
     /**
      * Checks if it is necessary to write the content of the file
-     * <tt>.settings/xxx.prefs</tt>.
+     * <tt>.settings/xxx.prefs</tt>. The fingerprint is remembered to be stored by the
+     * method <tt>close</tt> after the file has been updated.
      * 
      * @param name
      *        The name of the package for the preferences.
-     * @return <tt>True</tt> if the content needs to be (re)written.
+     * @param fingerprint
+     *        The fingerprint of the inputs the content is generated from.
+     * @return <tt>False</tt> if the content needs to be (re)written.
      * @since Ant-Eclipse 1.0
      */
-    abstract boolean isPreferencesUpToDate(String name);
+    abstract boolean isPreferencesUpToDate(String name, String fingerprint);
 
     /**
-     * Checks if it is necessary to write the content of the file .project.
+     * Checks if it is necessary to write the content of the file .project. The
+     * fingerprint is remembered to be stored by the method <tt>close</tt> after the
+     * file has been updated.
      * 
-     * @return <tt>True</tt> if the content needs to be (re)written.
+     * @param fingerprint
+     *        The fingerprint of the inputs the content is generated from.
+     * @return <tt>False</tt> if the content needs to be (re)written.
      * @since Ant-Eclipse 1.0
      */
-    abstract boolean isProjectUpToDate();
+    abstract boolean isProjectUpToDate(String fingerprint);
 
     /**
-     * Checks if it is necessary to write the content of the file .classpath.
+     * Checks if it is necessary to write the content of the file .classpath. The
+     * fingerprint is remembered to be stored by the method <tt>close</tt> after the
+     * file has been updated.
      * 
-     * @return <tt>True</tt> if the content needs to be (re)written.
+     * @param fingerprint
+     *        The fingerprint of the inputs the content is generated from.
+     * @return <tt>False</tt> if the content needs to be (re)written.
      * @since Ant-Eclipse 1.0
      */
-    abstract boolean isClassPathUpToDate();
+    abstract boolean isClassPathUpToDate(String fingerprint);
+
+    /**
+     * Finishes the output after all files have been generated successfully, storing the
+     * fingerprints passed to the up-to-date checks of the updated files. Nothing is done
+     * by default.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    void close() {
+    }
 
     /**
      * Returns a stream to read the current content of the file
@@ -89,7 +169,8 @@ abstract class EclipseOutput {
      * 
      * @param name
      *        The name of the package for the preferences.
-     * @return Source stream with the current content.
+     * @return Source stream with the current content or <tt>null</tt> if the file does
+     *         not exist.
      * @since Ant-Eclipse 1.0
      */
     abstract InputStream openPreferences(String name);
@@ -97,7 +178,8 @@ abstract class EclipseOutput {
     /**
      * Returns a stream to read the current content of the file .project.
      * 
-     * @return Source stream with the current content.
+     * @return Source stream with the current content or <tt>null</tt> if the file does
+     *         not exist.
      * @since Ant-Eclipse 1.0
      */
     abstract InputStream openProject();
@@ -105,7 +187,8 @@ abstract class EclipseOutput {
     /**
      * Returns a stream to read the current content of the file .classpath.
      * 
-     * @return Source stream with the current content.
+     * @return Source stream with the current content or <tt>null</tt> if the file does
+     *         not exist.
      * @since Ant-Eclipse 1.0
      */
     abstract InputStream openClassPath();
@@ -136,4 +219,138 @@ abstract class EclipseOutput {
      */
     abstract OutputStream createClassPath();
 
+    /**
+     * Writes the content of the file <tt>.settings/xxx.prefs</tt> only if it differs
+     * from the current content of the file.
+     * 
+     * @param name
+     *        The name of the package for the preferences.
+     * @param content
+     *        The new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @since Ant-Eclipse 1.0
+     */
+    int updatePreferences(String name, byte[] content) throws IOException {
+        int result = compareContent(openPreferences(name), content);
+        if (result != UNCHANGED)
+            writeContent(createPreferences(name), content);
+        return result;
+    }
+
+    /**
+     * Writes the content of the file <tt>.settings/xxx.prefs</tt> only if it differs
+     * from the current content of the file, sharing a single copy of every distinct
+     * content among more projects if possible. This implementation does not share the
+     * files; it only updates them.
+     * 
+     * @param name
+     *        The name of the package for the preferences.
+     * @param content
+     *        The new content of the file.
+     * @param store
+     *        The directory to keep the shared copies in.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @since Ant-Eclipse 1.0
+     */
+    int updateSharedPreferences(String name, byte[] content, File store)
+            throws IOException {
+        return updatePreferences(name, content);
+    }
+
+    /**
+     * Writes the content of the file .project only if it differs from the current
+     * content of the file.
+     * 
+     * @param content
+     *        The new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @since Ant-Eclipse 1.0
+     */
+    int updateProject(byte[] content) throws IOException {
+        int result = compareContent(openProject(), content);
+        if (result != UNCHANGED)
+            writeContent(createProject(), content);
+        return result;
+    }
+
+    /**
+     * Writes the content of the file .classpath only if it differs from the current
+     * content of the file.
+     * 
+     * @param content
+     *        The new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @since Ant-Eclipse 1.0
+     */
+    int updateClassPath(byte[] content) throws IOException {
+        int result = compareContent(openClassPath(), content);
+        if (result != UNCHANGED)
+            writeContent(createClassPath(), content);
+        return result;
+    }
+
+    /**
+     * Writes the content of the file .classpath produced by the specified writer only if
+     * it differs from the current content of the file and the writer did not drop it.
+     * This implementation collects the content in memory and passes it to the method
+     * <tt>updateClassPath(byte[])</tt>.
+     * 
+     * @param writer
+     *        The writer producing the new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error producing the content or reading or writing the
+     *         file.
+     * @since Ant-Eclipse 1.0
+     */
+    int updateClassPath(ContentWriter writer) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        if (!writer.write(buffer))
+            return UNCHANGED;
+        return updateClassPath(buffer.toByteArray());
+    }
+
+    private static int compareContent(InputStream input, byte[] content)
+            throws IOException {
+        if (input == null)
+            return CREATED;
+        try {
+            byte[] buffer = new byte[8192];
+            int offset = 0;
+            for (int count; (count = input.read(buffer)) != -1;) {
+                if (offset + count > content.length)
+                    return CHANGED;
+                for (int i = 0; i != count; ++i)
+                    if (buffer[i] != content[offset + i])
+                        return CHANGED;
+                offset += count;
+            }
+            return offset == content.length ? UNCHANGED : CHANGED;
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void writeContent(OutputStream output, byte[] content)
+            throws IOException {
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+    }
+
 }
@@ -0,0 +1,327 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Renders the content of the files of an Eclipse project from the parts of a resolved
+ * project. The methods depend only on their parameters (and the current time for the
+ * time stamp of preferences), they do not log and they can be called by more threads
+ * concurrently.
+ * 
+ * @see ResolvedEclipseProject
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class EclipseRenderer {
+
+    private EclipseRenderer() {
+    }
+
+    /**
+     * Renders the content of the file <tt>.project</tt>.
+     * 
+     * @param description
+     *        The resolved description of the project.
+     * @return The content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    static byte[] renderProject(ResolvedEclipseProject.Description description) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        XmlWriter writer = null;
+        try {
+            writer = new XmlWriter(new OutputStreamWriter(buffer, "UTF-8"));
+            writer.writeXmlDeclaration("UTF-8");
+            writer.openElement("projectDescription");
+            writer.openElement("name");
+            writer.writeText(description.name);
+            writer.closeElement("name");
+            writer.openElement("comment");
+            writer.closeElement("comment");
+            writer.openElement("projects");
+            writer.closeElement("projects");
+            writer.openElement("buildSpec");
+            writer.openElement("buildCommand");
+            writer.openElement("name");
+            writer.writeText(description.buildCommand);
+            writer.closeElement("name");
+            writer.openElement("arguments");
+            writer.closeElement("arguments");
+            writer.closeElement("buildCommand");
+            writer.closeElement("buildSpec");
+            writer.openElement("natures");
+            for (int i = 0, count = description.getNatureCount(); i != count; ++i) {
+                writer.openElement("nature");
+                writer.writeText(description.getNature(i));
+                writer.closeElement("nature");
+            }
+            writer.closeElement("natures");
+            writer.closeElement("projectDescription");
+        } catch (UnsupportedEncodingException exception) {
+            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+        } catch (IOException exception) {
+            throw new BuildException("Writing the project definition failed.", exception);
+        } finally {
+            if (writer != null)
+                try {
+                    writer.close();
+                } catch (IOException exception1) {
+                    throw new BuildException("Closing the project definition failed.",
+                            exception1);
+                }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Renders the content of the file <tt>.classpath</tt>.
+     * 
+     * @param entries
+     *        The resolved entries in the order of output.
+     * @return The content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    static byte[] renderClassPath(ResolvedEclipseProject.ClassPathEntry[] entries) {
+        Vector items = new Vector(entries.length);
+        for (int i = 0; i != entries.length; ++i)
+            items.addElement(entries[i]);
+        return renderClassPath(items, false);
+    }
+
+    /**
+     * Renders the content of the file <tt>.classpath</tt> with the entries restored from
+     * the specified store one by one.
+     * 
+     * @param entries
+     *        The store with the resolved entries in the order of output.
+     * @return The content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    static byte[] renderClassPath(final ClassPathEntryStore entries) {
+        return renderClassPath(new AbstractList() {
+
+            public Object get(int index) {
+                return entries.get(index);
+            }
+
+            public int size() {
+                return entries.size();
+            }
+
+        }, false);
+    }
+
+    /**
+     * Renders the content of the file <tt>.classpath</tt> merged with the entries kept
+     * from the existing file. The generated entries are marked by the classpath
+     * attribute <tt>ant-eclipse.generated</tt>.
+     * 
+     * @param items
+     *        The resolved entries and the instances of the class
+     *        ClassPathMerger.KeptEntry in the order of output.
+     * @return The content of the file.
+     * @see ClassPathMerger
+     * @since Ant-Eclipse 1.0
+     */
+    static byte[] renderMergedClassPath(Vector items) {
+        return renderClassPath(items, true);
+    }
+
+    /**
+     * Renders the content of a file <tt>.settings/xxx.prefs</tt>.
+     * 
+     * @param preferences
+     *        The resolved preferences.
+     * @param timeStamp
+     *        <tt>True</tt> if the file should start with a comment containing the
+     *        current time.
+     * @return The content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    static byte[] renderPreferences(ResolvedEclipseProject.Preferences preferences,
+            boolean timeStamp) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        OutputStreamWriter writer = null;
+        try {
+            writer = new OutputStreamWriter(buffer, "UTF-8");
+            if (timeStamp) {
+                writer.write('#');
+                writer.write(Calendar.getInstance().getTime().toString());
+                writer.write('\n');
+            }
+            for (int i = 0, count = preferences.getVariableCount(); i != count; ++i)
+                writeVariable(writer, preferences.getVariableName(i), preferences
+                        .getVariableValue(i));
+        } catch (UnsupportedEncodingException exception) {
+            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+        } catch (IOException exception) {
+            throw new BuildException("Writing the settings failed.", exception);
+        } finally {
+            if (writer != null)
+                try {
+                    writer.close();
+                } catch (IOException exception1) {
+                    throw new BuildException("Closing the settings failed.", exception1);
+                }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes a single variable into a settings file. The characters which would end or
+     * change the name of the variable are escaped like by the class java.util.Properties.
+     * 
+     * @param writer
+     *        The output stream to write into.
+     * @param name
+     *        The name of the variable.
+     * @param value
+     *        The value of the variable.
+     * @throws IOException
+     *         It an error during the output occurs.
+     * @since Ant-Eclipse 1.0
+     */
+    static void writeVariable(Writer writer, String name, String value)
+            throws IOException {
+        for (int i = 0, length = name.length(); i != length; ++i) {
+            char character = name.charAt(i);
+            switch (character) {
+            case '\t':
+                writer.write("\\t");
+                break;
+            case '\n':
+                writer.write("\\n");
+                break;
+            case '\r':
+                writer.write("\\r");
+                break;
+            case '\f':
+                writer.write("\\f");
+                break;
+            case ' ':
+            case '=':
+            case ':':
+            case '#':
+            case '!':
+            case '\\':
+                writer.write('\\');
+            default:
+                writer.write(character);
+            }
+        }
+        writer.write('=');
+        writer.write(value);
+        writer.write('\n');
+    }
+
+    private static byte[] renderClassPath(List items, boolean mark) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        XmlWriter writer = null;
+        try {
+            writer = new XmlWriter(new OutputStreamWriter(buffer, "UTF-8"));
+            writer.writeXmlDeclaration("UTF-8");
+            writer.openElement("classpath");
+            for (int i = 0, size = items.size(); i != size; ++i) {
+                Object item = items.get(i);
+                if (item instanceof ClassPathMerger.KeptEntry)
+                    ClassPathMerger.write(writer, (ClassPathMerger.KeptEntry) item);
+                else
+                    writeClassPathEntry(writer,
+                            (ResolvedEclipseProject.ClassPathEntry) item, mark);
+            }
+            writer.closeElement("classpath");
+        } catch (UnsupportedEncodingException exception) {
+            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+        } catch (IOException exception) {
+            throw new BuildException("Writing the classpath definition failed.",
+                    exception);
+        } finally {
+            if (writer != null)
+                try {
+                    writer.close();
+                } catch (IOException exception1) {
+                    throw new BuildException("Closing the classpath definition failed.",
+                            exception1);
+                }
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Writes a single element <tt>classpathentry</tt>. It is used to write the entries
+     * of the file <tt>.classpath</tt> one by one in the streaming mode.
+     * 
+     * @param writer
+     *        The output stream to write into.
+     * @param entry
+     *        The resolved entry to write.
+     * @param mark
+     *        <tt>True</tt> if the entry should be marked as generated.
+     * @throws IOException
+     *         It an error during the output occurs.
+     * @since Ant-Eclipse 1.0
+     */
+    static void writeClassPathEntry(XmlWriter writer,
+            ResolvedEclipseProject.ClassPathEntry entry, boolean mark) throws IOException {
+        writer.openOpeningTag("classpathentry");
+        writer.appendAttribute("kind", entry.kind);
+        writer.appendAttribute("path", entry.path);
+        if (entry.excluding != null)
+            writer.appendAttribute("excluding", entry.excluding);
+        if (entry.output != null)
+            writer.appendAttribute("output", entry.output);
+        if (entry.exported)
+            writer.appendAttribute("exported", "true");
+        if (entry.sourcePath != null)
+            writer.appendAttribute("sourcepath", entry.sourcePath);
+        if (entry.javadocLocation == null && !mark) {
+            writer.closeDegeneratedElement();
+            return;
+        }
+        writer.closeOpeningTag();
+        writer.openElement("attributes");
+        if (entry.javadocLocation != null)
+            writeClassPathAttribute(writer, "javadoc_location", entry.javadocLocation);
+        if (mark)
+            writeClassPathAttribute(writer, ClassPathMerger.GENERATED_ATTRIBUTE, "true");
+        writer.closeElement("attributes");
+        writer.closeElement("classpathentry");
+    }
+
+    private static void writeClassPathAttribute(XmlWriter writer, String name,
+            String value) throws IOException {
+        writer.openOpeningTag("attribute");
+        writer.appendAttribute("value", value);
+        writer.appendAttribute("name", name);
+        writer.closeDegeneratedElement();
+    }
+
+}
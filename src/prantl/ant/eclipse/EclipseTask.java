@@ -19,9 +19,15 @@
 
 package prantl.ant.eclipse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Vector;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 import org.apache.tools.ant.Task;
 
 /**
@@ -29,6 +35,11 @@ import org.apache.tools.ant.Task;
  * for the Eclipse IDE using the settings from the Ant script. The configuration for the
  * task is stored in an object of the class EclipseElement and the actual output is
  * delegated into an implementation of the interface EclipseOutput.
+ * <p>
+ * Independent instances of the task can be executed concurrently, for example by the
+ * Ant task <tt>parallel</tt>, as long as they do not write into the same directory.
+ * The configuration elements do not share any modifiable state between tasks.
+ * </p>
  * 
  * @see EclipseElement
  * @since Ant-Eclipse 1.0
@@ -36,10 +47,86 @@ import org.apache.tools.ant.Task;
  */
 public class EclipseTask extends Task {
 
+    /**
+     * Runs a single generator and collects its log messages and its failure, so that
+     * they can be reported in a defined order after all generators have finished.
+     * Instances are run by a WorkerPool.
+     * 
+     * @see WorkerPool
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    abstract class GeneratorJob implements Runnable {
+
+        Vector messages = new Vector();
+        RuntimeException failure;
+
+        /**
+         * Runs the generator with the log messages of the current thread buffered.
+         * 
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            try {
+                runBuffered(new Runnable() {
+
+                    public void run() {
+                        generate();
+                    }
+
+                }, messages);
+            } catch (RuntimeException exception) {
+                failure = exception;
+            }
+        }
+
+        /**
+         * Performs the generation.
+         * 
+         * @since Ant-Eclipse 1.0
+         */
+        abstract void generate();
+
+    }
+
+    /**
+     * Contains a log message buffered during a concurrent generation.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static class BufferedMessage {
+
+        String message;
+        int level;
+
+        BufferedMessage(String message, int level) {
+            this.message = message;
+            this.level = level;
+        }
+
+    }
+
     private EclipseElement eclipse;
 
     private EclipseOutput output;
 
+    private Vector changedFiles = new Vector();
+
+    private ThreadLocal logBuffer = new ThreadLocal();
+
+    private GenerationCache cache = null;
+
+    private WorkspacePreferences hoistedPreferences = null;
+
+    private ResolvedEclipseProject.Description resolvedDescription = null;
+
+    private ClassPathEntryStore resolvedClassPath = null;
+
+    private Vector resolvedPreferences = null;
+
+    private ResolvedEclipseProject resolvedProject = null;
+
     /**
      * Creates a new instance of the task. Default constructor, to be called by ant in the
      * productive environment.
@@ -88,6 +175,236 @@ public class EclipseTask extends Task {
         return output;
     }
 
+    /**
+     * Records the result of the update of a generated file. Called by the generators
+     * after a file has been processed.
+     * 
+     * @param name
+     *        The name of the file relative to the project directory.
+     * @param result
+     *        The result of the update, one of the constants of the class EclipseOutput.
+     * @since Ant-Eclipse 1.0
+     */
+    void fileUpdated(String name, int result) {
+        if (result != EclipseOutput.UNCHANGED)
+            changedFiles.addElement(name);
+    }
+
+    /**
+     * Sets the cache of generated files shared with other tasks. The statistics of the
+     * cache are not logged by this task then.
+     * 
+     * @param value
+     *        The shared cache of generated files or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    void setCache(GenerationCache value) {
+        cache = value;
+    }
+
+    /**
+     * Returns the content of a generated file from the cache or <tt>null</tt> if there
+     * is no cache or the content is not present in it.
+     * 
+     * @param fingerprint
+     *        The fingerprint of the inputs of the file.
+     * @return The cached content or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    byte[] getCachedContent(String fingerprint) {
+        return cache == null ? null : cache.get(this, fingerprint);
+    }
+
+    /**
+     * Checks if the generated files are cached.
+     * 
+     * @return <tt>True</tt> if there is a cache of the generated files.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean isCaching() {
+        return cache != null;
+    }
+
+    /**
+     * Stores the content of a generated file read from the specified stream into the
+     * cache, if there is some. The stream is closed.
+     * 
+     * @param fingerprint
+     *        The fingerprint of the inputs of the file.
+     * @param content
+     *        The stream with the content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    void cacheContent(String fingerprint, InputStream content) {
+        if (cache != null)
+            cache.put(this, fingerprint, content);
+        else
+            try {
+                content.close();
+            } catch (IOException exception) {
+            }
+    }
+
+    /**
+     * Stores the content of a generated file into the cache, if there is some.
+     * 
+     * @param fingerprint
+     *        The fingerprint of the inputs of the file.
+     * @param content
+     *        The content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    void cacheContent(String fingerprint, byte[] content) {
+        if (cache != null)
+            cache.put(this, fingerprint, content);
+    }
+
+    /**
+     * Sets the preference variables written into the preferences of the workspace, which
+     * should be left out of the preferences of the project.
+     * 
+     * @param value
+     *        The preferences hoisted to the workspace or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    void setHoistedPreferences(WorkspacePreferences value) {
+        hoistedPreferences = value;
+    }
+
+    /**
+     * Sets the resolved description of the project. It is called by the generator of the
+     * file <tt>.project</tt>. The description is kept only if the model was requested.
+     * 
+     * @param value
+     *        The resolved description of the project.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized void setResolvedDescription(ResolvedEclipseProject.Description value) {
+        if (eclipse.getModelFile() != null)
+            resolvedDescription = value;
+    }
+
+    /**
+     * Sets the resolved entries of the classpath. It is called by the generator of the
+     * file <tt>.classpath</tt>. The entries are kept only if the model was requested.
+     * 
+     * @param value
+     *        The store with the resolved entries of the classpath in the order of
+     *        output.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized void setResolvedClassPath(ClassPathEntryStore value) {
+        if (eclipse.getModelFile() != null)
+            resolvedClassPath = value;
+    }
+
+    /**
+     * Adds resolved preferences. It is called by the generator of the files
+     * <tt>.settings/xxx.prefs</tt> in the order of output. The preferences are kept only
+     * if the model was requested.
+     * 
+     * @param value
+     *        The resolved preferences.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized void addResolvedPreferences(ResolvedEclipseProject.Preferences value) {
+        if (eclipse.getModelFile() == null)
+            return;
+        if (resolvedPreferences == null)
+            resolvedPreferences = new Vector();
+        resolvedPreferences.addElement(value);
+    }
+
+    /**
+     * Returns the project resolved by the last execution of this task or <tt>null</tt>
+     * if the task has not been executed successfully yet or if no file for the model was
+     * set. The model can be rendered again without resolving the Ant paths.
+     * 
+     * @return The resolved project or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    ResolvedEclipseProject getResolvedProject() {
+        return resolvedProject;
+    }
+
+    /**
+     * Returns the preference variables written into the preferences of the workspace or
+     * <tt>null</tt> if there are none.
+     * 
+     * @return The preferences hoisted to the workspace or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    WorkspacePreferences getHoistedPreferences() {
+        return hoistedPreferences;
+    }
+
+    /**
+     * Logs a message with the given priority. If called by a generator running
+     * concurrently with the others, the message is buffered and logged after all of them
+     * have finished.
+     * 
+     * @param message
+     *        The message to log.
+     * @param level
+     *        The priority of the message.
+     * @see org.apache.tools.ant.Task#log(java.lang.String, int)
+     */
+    public void log(String message, int level) {
+        Vector messages = (Vector) logBuffer.get();
+        if (messages != null)
+            messages.addElement(new BufferedMessage(message, level));
+        else
+            super.log(message, level);
+    }
+
+    /**
+     * Runs the job with the log messages of the current thread buffered in the specified
+     * list, so that they can be logged by the method <tt>logBuffered</tt> later. Used
+     * for jobs run by a WorkerPool.
+     * 
+     * @param job
+     *        The job to run.
+     * @param messages
+     *        The list to buffer the log messages in.
+     * @since Ant-Eclipse 1.0
+     */
+    void runBuffered(Runnable job, Vector messages) {
+        Object previous = logBuffer.get();
+        logBuffer.set(messages);
+        try {
+            job.run();
+        } finally {
+            logBuffer.set(previous);
+        }
+    }
+
+    /**
+     * Logs the messages buffered by the method <tt>runBuffered</tt>. If called by a
+     * generator running concurrently with the others, the messages are buffered again
+     * in the buffer of the generator.
+     * 
+     * @param messages
+     *        The buffered messages to log.
+     * @since Ant-Eclipse 1.0
+     */
+    void logBuffered(Vector messages) {
+        for (int i = 0, size = messages.size(); i != size; ++i) {
+            BufferedMessage message = (BufferedMessage) messages.get(i);
+            log(message.message, message.level);
+        }
+    }
+
+    /**
+     * Returns a list with names of the files which have been created or changed by the
+     * last execution of the task. The names are relative to the project directory.
+     * 
+     * @return A list with names of the created or changed files.
+     * @since Ant-Eclipse 1.0
+     */
+    Vector getChangedFiles() {
+        return changedFiles;
+    }
+
     /**
      * If true, stop the build process if the generation of the project files fails.
      * 
@@ -125,8 +442,8 @@ public class EclipseTask extends Task {
     }
 
     /**
-     * Sets if the generated files are to be written always or only if the Ant build
-     * script has been changed. The latter is default.
+     * Sets if the generated files are to be written always or only if the inputs they
+     * are generated from have been changed. The latter is default.
      * 
      * @param flag
      *        <tt>True</tt> if the files should always be overwritten, otherwise
@@ -137,6 +454,65 @@ public class EclipseTask extends Task {
         eclipse.setUpdateAlways(flag);
     }
 
+    /**
+     * Sets if the files are to be generated concurrently, each kind of them by its own
+     * thread. Log messages are reported in the same order as if the files were generated
+     * one after another. The files are generated one after another by default.
+     * 
+     * @param flag
+     *        <tt>True</tt> if the files should be generated concurrently, otherwise
+     *        <tt>false</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setParallel(boolean flag) {
+        eclipse.setParallel(flag);
+    }
+
+    /**
+     * Sets if the generated files are to be reproducible - the same inputs produce the
+     * same bytes on every machine. The preferences are written without the time of the
+     * generation and with the variables sorted by name and the paths in the classpath
+     * use slashes as separators. It is not set by default.
+     * 
+     * @param flag
+     *        <tt>True</tt> if the files should be reproducible, otherwise
+     *        <tt>false</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setReproducible(boolean flag) {
+        eclipse.setReproducible(flag);
+    }
+
+    /**
+     * Sets the directory to cache the generated files in. The content of a file is taken
+     * from the cache instead of rendering it if it was generated from the same inputs
+     * before. The directory can be shared by more builds, also on other machines. No
+     * cache is used by default.
+     * 
+     * @param dir
+     *        A directory to cache the generated files in.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setCacheDir(File dir) {
+        eclipse.setCacheDir(dir);
+    }
+
+    /**
+     * Sets the file to write the resolved model of the project into. The model contains
+     * the description, the classpath entries and the preferences with all paths
+     * resolved in a compact binary form, which can be read back and rendered again
+     * without resolving the Ant paths. The file is written only if the model changed.
+     * The classpath entries are not included in the streaming mode. The resolved model
+     * is neither kept nor written by default.
+     * 
+     * @param file
+     *        A file to write the resolved model into.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setModelFile(File file) {
+        eclipse.setModelFile(file);
+    }
+
     /**
      * Sets the destination directory to place generated files into.
      * 
@@ -193,8 +569,8 @@ public class EclipseTask extends Task {
 
     /**
      * Generates the output files. Eventually existing files will be overwritten only if
-     * the timestamp of the ant project file is newer as the timestamp of a particular
-     * file.
+     * the fingerprint of the inputs of a particular file has changed since it was
+     * generated last time.
      * 
      * @throws BuildException
      *         In case of misconfiguration or errors.
@@ -203,9 +579,103 @@ public class EclipseTask extends Task {
     public void execute() throws BuildException {
         if (output == null)
             output = new FileEclipseOutput(this);
-        new SettingsGenerator(this).generate();
-        new ProjectGenerator(this).generate();
-        new ClassPathGenerator(this).generate();
+        changedFiles.clear();
+        resolvedDescription = null;
+        resolvedClassPath = null;
+        resolvedPreferences = null;
+        resolvedProject = null;
+        GenerationCache ownCache = null;
+        if (cache == null && eclipse.getCacheDir() != null)
+            cache = ownCache = new GenerationCache(eclipse.getCacheDir());
+        try {
+            if (eclipse.isParallel())
+                generateConcurrently();
+            else {
+                new SettingsGenerator(this).generate();
+                new ProjectGenerator(this).generate();
+                new ClassPathGenerator(this).generate();
+            }
+            output.close();
+            if (eclipse.getModelFile() != null) {
+                resolvedProject = new ResolvedEclipseProject(resolvedDescription,
+                        resolvedClassPath, resolvedPreferences == null ? null
+                                : (ResolvedEclipseProject.Preferences[]) resolvedPreferences
+                                        .toArray(new ResolvedEclipseProject.Preferences[0]));
+                writeModel(eclipse.getModelFile());
+            }
+        } finally {
+            // the resolved parts are kept in the model only
+            resolvedDescription = null;
+            resolvedClassPath = null;
+            resolvedPreferences = null;
+            if (ownCache != null)
+                cache = null;
+        }
+        if (ownCache != null)
+            ownCache.logStatistics(this);
+    }
+
+    private void writeModel(File file) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            resolvedProject.write(buffer);
+            byte[] content = buffer.toByteArray();
+            int result;
+            if (!file.isFile())
+                result = EclipseOutput.CREATED;
+            else if (!Arrays.equals(content, WorkspacePreferences.readFile(file)))
+                result = EclipseOutput.CHANGED;
+            else
+                result = EclipseOutput.UNCHANGED;
+            if (result != EclipseOutput.UNCHANGED)
+                WorkspacePreferences.writeFile(file, content);
+            log("The resolved model \"" + file.getPath() + "\" was "
+                    + EclipseOutput.getResultName(result) + ".");
+        } catch (IOException exception) {
+            throw new BuildException("Writing the resolved model failed.", exception,
+                    getLocation());
+        }
+    }
+
+    private void generateConcurrently() {
+        GeneratorJob[] jobs = new GeneratorJob[] { new GeneratorJob() {
+
+            void generate() {
+                new SettingsGenerator(EclipseTask.this).generate();
+            }
+
+        }, new GeneratorJob() {
+
+            void generate() {
+                new ProjectGenerator(EclipseTask.this).generate();
+            }
+
+        }, new GeneratorJob() {
+
+            void generate() {
+                new ClassPathGenerator(EclipseTask.this).generate();
+            }
+
+        } };
+        WorkerPool.run(jobs, jobs.length);
+        RuntimeException failure = null;
+        for (int i = 0; i != jobs.length; ++i) {
+            Vector messages = jobs[i].messages;
+            for (int j = 0, size = messages.size(); j != size; ++j) {
+                BufferedMessage message = (BufferedMessage) messages.get(j);
+                super.log(message.message, message.level);
+            }
+            if (jobs[i].failure == null)
+                continue;
+            // the first failure stops the build as if the generators ran one after
+            // another, the others are only reported
+            if (failure == null)
+                failure = jobs[i].failure;
+            else
+                super.log(jobs[i].failure.getMessage(), Project.MSG_ERR);
+        }
+        if (failure != null)
+            throw failure;
     }
 
 }
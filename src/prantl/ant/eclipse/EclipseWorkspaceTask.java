@@ -0,0 +1,507 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Vector;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.BuildListener;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.DirSet;
+
+/**
+ * Generates Eclipse projects for more modules in a single pass. Modules are given by
+ * nested dirsets and module elements and they are generated concurrently by the
+ * specified number of threads. The nested elements <tt>settings</tt>,
+ * <tt>project</tt> and <tt>classpath</tt> are shared by all modules which do not
+ * define their own ones; relative paths in them are resolved against the directory of
+ * each module. The shared element <tt>project</tt> must not set the name of the
+ * project, which would be the same for all modules; the name of a module is the name
+ * of its directory unless it is set by the element <tt>module</tt>.
+ * <p>
+ * Every module is generated by an instance of the class EclipseTask running in a
+ * lightweight child project, which shares the references and the build listeners with
+ * the current project, but does not parse any build script. Paths referenced by more
+ * modules are resolved only once, using the cache from the current project.
+ * </p>
+ * <p>
+ * If the directory of the workspace is set, the preference variables common to all
+ * modules are written into the workspace preferences and the modules keep only the
+ * ones which differ.
+ * </p>
+ * 
+ * @see EclipseTask
+ * @see ModuleElement
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class EclipseWorkspaceTask extends Task {
+
+    /**
+     * Generates a single module and records the result. Instances are run by a
+     * WorkerPool.
+     * 
+     * @see WorkerPool
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static class ModuleJob implements Runnable {
+
+        String name;
+        EclipseTask task;
+        long time;
+        BuildException failure;
+
+        /**
+         * Creates a new instance for the specified module.
+         * 
+         * @param name
+         *        The name of the module.
+         * @param task
+         *        The task generating the module.
+         * @since Ant-Eclipse 1.0
+         */
+        ModuleJob(String name, EclipseTask task) {
+            this.name = name;
+            this.task = task;
+        }
+
+        /**
+         * Executes the task and measures the time of its execution. Any failure is
+         * stored as a BuildException to be reported by the summary.
+         * 
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            long start = System.currentTimeMillis();
+            try {
+                task.execute();
+            } catch (BuildException exception) {
+                failure = exception;
+            } catch (RuntimeException exception) {
+                // an unexpected failure of one module must not stop the summary
+                failure = new BuildException("Generating the module failed: "
+                        + exception, exception);
+            } finally {
+                time = System.currentTimeMillis() - start;
+            }
+        }
+
+    }
+
+    private Vector dirSets = new Vector();
+
+    private Vector modules = new Vector();
+
+    private int threadCount = 1;
+
+    private EclipseElement.Mode mode = null;
+
+    private boolean updateAlways = false;
+
+    private boolean reproducible = false;
+
+    private boolean failOnError = true;
+
+    private File cacheDir = null;
+
+    private GenerationCache cache = null;
+
+    private File workspaceDir = null;
+
+    private WorkspacePreferences hoistedPreferences = null;
+
+    private SettingsElement settings = null;
+
+    private ProjectElement project = null;
+
+    private ClassPathElement classPath = null;
+
+    /**
+     * Creates a new instance of the task.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public EclipseWorkspaceTask() {
+    }
+
+    /**
+     * Sets the maximum number of threads generating the modules concurrently. The
+     * modules are generated one after another by default.
+     * 
+     * @param value
+     *        A positive number of threads.
+     * @throws BuildException
+     *         If the value is less than one.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setThreadCount(int value) {
+        if (value < 1)
+            throw new BuildException("The attribute \"threadcount\" has an invalid value \""
+                    + value + "\". It must be a positive number.");
+        threadCount = value;
+    }
+
+    /**
+     * Sets the project creation mode for all modules.
+     * 
+     * @param value
+     *        A project creation mode.
+     * @see EclipseTask#setMode(EclipseElement.Mode)
+     * @since Ant-Eclipse 1.0
+     */
+    public void setMode(EclipseElement.Mode value) {
+        mode = value;
+    }
+
+    /**
+     * Sets if the generated files are to be written always or only if the inputs they
+     * are generated from have been changed. The latter is default.
+     * 
+     * @param flag
+     *        <tt>True</tt> if the files should always be overwritten, otherwise
+     *        <tt>false</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setUpdateAlways(boolean flag) {
+        updateAlways = flag;
+    }
+
+    /**
+     * Sets if the generated files are to be reproducible for all modules.
+     * 
+     * @param flag
+     *        <tt>True</tt> if the files should be reproducible, otherwise
+     *        <tt>false</tt>.
+     * @see EclipseTask#setReproducible(boolean)
+     * @since Ant-Eclipse 1.0
+     */
+    public void setReproducible(boolean flag) {
+        reproducible = flag;
+    }
+
+    /**
+     * Sets the directory to cache the generated files in. The cache is shared by all
+     * modules and its statistics are logged with the summary.
+     * 
+     * @param dir
+     *        A directory to cache the generated files in.
+     * @see EclipseTask#setCacheDir(File)
+     * @since Ant-Eclipse 1.0
+     */
+    public void setCacheDir(File dir) {
+        cacheDir = dir;
+    }
+
+    /**
+     * Sets the directory of the Eclipse workspace. If set, the preference variables
+     * which have the same value in all modules are written once into the preferences of
+     * the workspace and left out of the preferences of the modules.
+     * 
+     * @param dir
+     *        The directory of the Eclipse workspace.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setWorkspaceDir(File dir) {
+        workspaceDir = dir;
+    }
+
+    /**
+     * If true, stop the build process if the generation of some module fails. The other
+     * modules are generated anyway.
+     * 
+     * @param value
+     *        <tt>True</tt> if it should halt, otherwise <tt>false</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setFailOnError(boolean value) {
+        failOnError = value;
+    }
+
+    /**
+     * Adds a set of directories to generate the modules in. The names of the modules are
+     * the names of the directories.
+     * 
+     * @param value
+     *        A set of module directories.
+     * @since Ant-Eclipse 1.0
+     */
+    public void addDirSet(DirSet value) {
+        dirSets.addElement(value);
+    }
+
+    /**
+     * Adds a definition of a single module.
+     * 
+     * @return A definition of the module element.
+     * @since Ant-Eclipse 1.0
+     */
+    public ModuleElement createModule() {
+        modules.addElement(new ModuleElement());
+        return (ModuleElement) modules.lastElement();
+    }
+
+    /**
+     * Adds a definition of the settings element shared by the modules which do not
+     * define their own one.
+     * 
+     * @return A definition of the settings element.
+     * @throws BuildException
+     *         If another settings element has been defined.
+     * @since Ant-Eclipse 1.0
+     */
+    public SettingsElement createSettings() {
+        if (settings != null)
+            throw new BuildException("The element <settings> has been already defined.");
+        settings = new SettingsElement();
+        return settings;
+    }
+
+    /**
+     * Adds a definition of the project element shared by the modules which do not define
+     * their own one. Its attribute <tt>name</tt> is not allowed; the modules are named
+     * by the element <tt>module</tt> or by their directories.
+     * 
+     * @return A definition of the project element.
+     * @throws BuildException
+     *         If another project element has been defined.
+     * @since Ant-Eclipse 1.0
+     */
+    public ProjectElement createProject() {
+        if (project != null)
+            throw new BuildException("The element <project> has been already defined.");
+        project = new ProjectElement();
+        return project;
+    }
+
+    /**
+     * Adds a definition of the classpath element shared by the modules which do not
+     * define their own one.
+     * 
+     * @return A definition of the classpath element.
+     * @throws BuildException
+     *         If another classpath element has been defined.
+     * @since Ant-Eclipse 1.0
+     */
+    public ClassPathElement createClassPath() {
+        if (classPath != null)
+            throw new BuildException("The element <classpath> has been already defined.");
+        classPath = new ClassPathElement();
+        return classPath;
+    }
+
+    /**
+     * Generates the Eclipse projects for all modules and logs a summary with the time
+     * spent on each module and the files which have been changed.
+     * 
+     * @throws BuildException
+     *         In case of misconfiguration or if generating of some module failed and
+     *         the attribute <tt>failonerror</tt> is set.
+     * @since Ant-Eclipse 1.0
+     */
+    public void execute() throws BuildException {
+        if (project != null && project.getName() != null)
+            throw new BuildException("The attribute \"name\" is not allowed in the element "
+                    + "<project> shared by the modules; it would give all of them the same "
+                    + "name. Use the attribute \"name\" of the element <module> instead.",
+                    getLocation());
+        if (classPath != null
+                && (classPath.getOutputRefid() != null || classPath.getArgFile() != null))
+            throw new BuildException("The attributes \"outputrefid\" and \"argfile\" are "
+                    + "not allowed in the element <classpath> shared by the modules; all of "
+                    + "them would publish their libraries under the same name. Use them in "
+                    + "the element <classpath> of the element <module> instead.",
+                    getLocation());
+        Vector descriptors = getModules();
+        if (descriptors.size() == 0) {
+            log("There were no modules found.", Project.MSG_WARN);
+            return;
+        }
+        // the shared preferences get their defaults once, before they are read by
+        // more threads
+        if (settings != null) {
+            Vector entries = settings.getPreferences();
+            for (int i = 0, size = entries.size(); i != size; ++i)
+                ((PreferencesElement) entries.get(i)).validate();
+        }
+        // the modules must find the path cache among the references of the current
+        // project to share it
+        PathCache.getInstance(getProject());
+        cache = cacheDir == null ? null : new GenerationCache(cacheDir);
+        hoistedPreferences = workspaceDir == null ? null
+                : hoistPreferences(descriptors);
+        ModuleJob[] jobs = new ModuleJob[descriptors.size()];
+        for (int i = 0; i != jobs.length; ++i)
+            jobs[i] = createJob((ModuleElement) descriptors.get(i));
+        log("Generating " + jobs.length + " Eclipse projects using up to "
+                + Math.min(threadCount, jobs.length) + " threads.");
+        long start = System.currentTimeMillis();
+        WorkerPool.run(jobs, threadCount);
+        long time = System.currentTimeMillis() - start;
+        logSummary(jobs, time);
+    }
+
+    private Vector getModules() {
+        Vector result = new Vector();
+        for (int i = 0, size = dirSets.size(); i != size; ++i) {
+            DirSet dirSet = (DirSet) dirSets.get(i);
+            File baseDirectory = dirSet.getDir(getProject());
+            DirectoryScanner scanner = dirSet.getDirectoryScanner(getProject());
+            String[] directories = scanner.getIncludedDirectories();
+            for (int j = 0; j != directories.length; ++j) {
+                ModuleElement module = new ModuleElement();
+                module.setDir(new File(baseDirectory, directories[j]));
+                result.addElement(module);
+            }
+        }
+        for (int i = 0, size = modules.size(); i != size; ++i) {
+            ModuleElement module = (ModuleElement) modules.get(i);
+            module.validate();
+            result.addElement(module);
+        }
+        return result;
+    }
+
+    private ModuleJob createJob(ModuleElement module) {
+        File directory = module.getDir();
+        String name = module.getName();
+        if (name == null)
+            name = directory.getName();
+        EclipseTask task = new EclipseTask();
+        task.setProject(createModuleProject(directory, name));
+        task.setTaskName(name);
+        task.setLocation(getLocation());
+        if (mode != null)
+            task.setMode(mode);
+        task.setUpdateAlways(updateAlways);
+        task.setReproducible(reproducible);
+        task.setCache(cache);
+        task.setHoistedPreferences(hoistedPreferences);
+        EclipseElement eclipse = task.getEclipse();
+        eclipse.setSettings(module.getSettings() != null ? module.getSettings()
+                : settings);
+        eclipse.setProject(module.getProject() != null ? module.getProject() : project);
+        eclipse.setClassPath(module.getClassPath() != null ? module.getClassPath()
+                : classPath);
+        return new ModuleJob(name, task);
+    }
+
+    private WorkspacePreferences hoistPreferences(Vector descriptors) {
+        Vector entries = new Vector(descriptors.size());
+        for (int i = 0, size = descriptors.size(); i != size; ++i) {
+            ModuleElement module = (ModuleElement) descriptors.get(i);
+            entries.addElement(module.getSettings() != null ? module.getSettings()
+                    : settings);
+        }
+        WorkspacePreferences result = new WorkspacePreferences(entries);
+        String[] names;
+        try {
+            // packages with variables hoisted earlier are written to remove them
+            names = result.getPackageNames(workspaceDir);
+        } catch (IOException exception) {
+            throw new BuildException("Reading the workspace preferences failed.",
+                    exception, getLocation());
+        }
+        for (int i = 0; i != names.length; ++i)
+            try {
+                int state = result.write(workspaceDir, names[i]);
+                Map variables = result.getVariables(names[i]);
+                log("The workspace preferences for \"" + names[i] + "\" with "
+                        + (variables == null ? 0 : variables.size()) + " variables were "
+                        + EclipseOutput.getResultName(state) + ".");
+            } catch (IOException exception) {
+                throw new BuildException("Writing the workspace preferences for \""
+                        + names[i] + "\" failed.", exception, getLocation());
+            }
+        if (result.getPackageNames().length == 0) {
+            log("There were no preferences common to all modules found.",
+                    Project.MSG_VERBOSE);
+            return null;
+        }
+        return result;
+    }
+
+    private Project createModuleProject(File directory, String name) {
+        Project parent = getProject();
+        Project result = parent.createSubProject();
+        parent.copyUserProperties(result);
+        result.setName(name);
+        result.setBaseDir(directory);
+        // internal objects of Ant like the property helper are referenced by names
+        // starting with "ant." and they must stay private to each project
+        for (Enumeration keys = parent.getReferences().keys(); keys.hasMoreElements();) {
+            String key = (String) keys.nextElement();
+            if (!key.startsWith("ant."))
+                result.addReference(key, parent.getReference(key));
+        }
+        Vector listeners = parent.getBuildListeners();
+        for (int i = 0, size = listeners.size(); i != size; ++i)
+            result.addBuildListener((BuildListener) listeners.get(i));
+        return result;
+    }
+
+    private void logSummary(ModuleJob[] jobs, long time) {
+        int changed = 0;
+        BuildException failure = null;
+        int failures = 0;
+        for (int i = 0; i != jobs.length; ++i) {
+            ModuleJob job = jobs[i];
+            StringBuffer message = new StringBuffer();
+            message.append("Module \"").append(job.name).append("\" (").append(job.time)
+                    .append(" ms): ");
+            if (job.failure != null) {
+                message.append("failed - ").append(job.failure.getMessage());
+                log(message.toString(), Project.MSG_ERR);
+                if (failure == null)
+                    failure = job.failure;
+                ++failures;
+                continue;
+            }
+            Vector files = job.task.getChangedFiles();
+            if (files.size() == 0)
+                message.append("up-to-date");
+            for (int j = 0, size = files.size(); j != size; ++j) {
+                if (j != 0)
+                    message.append(", ");
+                message.append(files.get(j));
+            }
+            changed += files.size();
+            log(message.toString());
+        }
+        log("Generated " + jobs.length + " Eclipse projects in " + time + " ms, "
+                + changed + " files changed.");
+        if (cache != null)
+            cache.logStatistics(this);
+        if (failure == null)
+            return;
+        String message = "Generating " + failures + " of " + jobs.length
+                + " Eclipse projects failed.";
+        if (failOnError)
+            throw new BuildException(message, failure);
+        log(message, Project.MSG_ERR);
+    }
+
+}
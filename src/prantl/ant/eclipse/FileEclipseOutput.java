@@ -19,13 +19,22 @@
 
 package prantl.ant.eclipse;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.Properties;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
@@ -33,7 +42,31 @@ import org.apache.tools.ant.util.FileUtils;
 
 /**
  * Implements the output interface performing the actual output of the Eclipse project
- * files into the configured directory.
+ * files into the configured directory. Fingerprints of the inputs of the generated files
+ * are kept in the file <tt>.settings/.ant-eclipse.state</tt> to decide if the files are
+ * up-to-date; a fingerprint is recorded only after its file has been written
+ * successfully, so that a failed generation is repeated by the next run. Generated
+ * content is compared with the existing file through a file channel into a buffer
+ * reused for all files and every file is written with a single channel write into a
+ * temporary file, which is renamed to its final name afterwards. Content written piece
+ * by piece, like the file .classpath in the streaming mode, goes into the temporary
+ * file first and the two files are compared before renaming, unless the writer drops
+ * the content. The files can be
+ * generated concurrently; the state and the buffer are guarded by the instance of this
+ * class.
+ * <p>
+ * Preferences can be shared by more projects: every distinct content is stored once in
+ * a shared directory and hard-linked into the directory <tt>.settings</tt>. Files are
+ * always replaced by renaming, never rewritten in place, so that generating a file of
+ * one project does not change the shared copy. Eclipse, however, rewrites a preference
+ * file in place when it is changed in the IDE, which changes all projects linked to
+ * the same copy; that is why linking is enabled only by the attribute <tt>link</tt>
+ * of the preferences elements. A stored copy is compared with the content before it is
+ * linked and replaced if it differs. An unchanged file is linked when the linking is
+ * turned on and it gets a copy of its own when the linking is turned off. If the file
+ * system or the Java runtime (older than 7) does not support hard links, the content
+ * is copied.
+ * </p>
  * 
  * @see EclipseElement EclipseOutput
  * @since Ant-Eclipse 1.0
@@ -41,8 +74,184 @@ import org.apache.tools.ant.util.FileUtils;
  */
 class FileEclipseOutput extends EclipseOutput {
 
+    /**
+     * Writes into a temporary file in the directory of the target file and replaces the
+     * target file with it by renaming when closed, so that readers never see a partially
+     * written file. If writing fails the temporary file is deleted and the target file is
+     * left untouched.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static final class ReplacingOutputStream extends FilterOutputStream {
+
+        private File temporary;
+
+        private File target;
+
+        private boolean failed = false;
+
+        /**
+         * Creates a new stream writing into the specified temporary file.
+         * 
+         * @param temporary
+         *        The temporary file to write into.
+         * @param target
+         *        The file to be replaced by the temporary file when closed.
+         * @throws FileNotFoundException
+         *         If the temporary file cannot be opened.
+         * @since Ant-Eclipse 1.0
+         */
+        ReplacingOutputStream(File temporary, File target) throws FileNotFoundException {
+            this(new FileOutputStream(temporary), temporary, target);
+        }
+
+        /**
+         * Creates a new stream writing into the specified stream opened for the
+         * temporary file. Only a stream of the class FileOutputStream can be written by
+         * the method <tt>write(ByteBuffer)</tt>.
+         * 
+         * @param output
+         *        The stream writing into the temporary file.
+         * @param temporary
+         *        The temporary file to write into.
+         * @param target
+         *        The file to be replaced by the temporary file when closed.
+         * @since Ant-Eclipse 1.0
+         */
+        ReplacingOutputStream(OutputStream output, File temporary, File target) {
+            super(output);
+            this.temporary = temporary;
+            this.target = target;
+        }
+
+        /**
+         * @see java.io.FilterOutputStream#write(int)
+         */
+        public void write(int value) throws IOException {
+            try {
+                out.write(value);
+            } catch (IOException exception) {
+                failed = true;
+                throw exception;
+            }
+        }
+
+        /**
+         * @see java.io.FilterOutputStream#write(byte[], int, int)
+         */
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            try {
+                out.write(buffer, offset, length);
+            } catch (IOException exception) {
+                failed = true;
+                throw exception;
+            }
+        }
+
+        /**
+         * Writes the whole content of the buffer directly through the channel of the
+         * temporary file.
+         * 
+         * @param buffer
+         *        The buffer with the content to write.
+         * @throws IOException
+         *         If there was an error writing into the temporary file.
+         */
+        void write(ByteBuffer buffer) throws IOException {
+            try {
+                FileChannel channel = ((FileOutputStream) out).getChannel();
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+            } catch (IOException exception) {
+                failed = true;
+                throw exception;
+            }
+        }
+
+        /**
+         * Closes the temporary file and replaces the target file with it, unless there
+         * was an error writing the content.
+         * 
+         * @throws IOException
+         *         If the temporary file could not be closed or renamed.
+         */
+        public void close() throws IOException {
+            if (temporary == null)
+                return;
+            try {
+                out.close();
+            } catch (IOException exception) {
+                failed = true;
+                throw exception;
+            } finally {
+                File source = temporary;
+                temporary = null;
+                if (failed)
+                    source.delete();
+                else
+                    rename(source, target);
+            }
+        }
+
+        static void rename(File source, File target) throws IOException {
+            // renaming over an existing file is atomic on POSIX file systems; other
+            // platforms refuse it and the target has to be deleted first
+            if (source.renameTo(target))
+                return;
+            if (target.exists() && target.delete() && source.renameTo(target))
+                return;
+            source.delete();
+            throw new IOException("Renaming the file \"" + source.getAbsolutePath()
+                    + "\" to \"" + target.getAbsolutePath() + "\" failed.");
+        }
+
+    }
+
+    private static final String STATE_FILE = ".settings/.ant-eclipse.state";
+
+    private static Method toPath = null;
+
+    private static Method createLink = null;
+
+    private static Method isSameFile = null;
+
+    private static Method getAttribute = null;
+
+    private static Object noLinkOptions = null;
+
+    static {
+        // hard links are supported by java.nio.file.Files since Java 7
+        try {
+            Class pathClass = Class.forName("java.nio.file.Path");
+            Class filesClass = Class.forName("java.nio.file.Files");
+            Class optionClass = Class.forName("java.nio.file.LinkOption");
+            toPath = File.class.getMethod("toPath", new Class[0]);
+            createLink = filesClass.getMethod("createLink", new Class[] { pathClass,
+                    pathClass });
+            isSameFile = filesClass.getMethod("isSameFile", new Class[] { pathClass,
+                    pathClass });
+            noLinkOptions = Array.newInstance(optionClass, 0);
+            getAttribute = filesClass.getMethod("getAttribute", new Class[] { pathClass,
+                    String.class, noLinkOptions.getClass() });
+        } catch (Exception exception) {
+            toPath = null;
+            createLink = null;
+            isSameFile = null;
+            getAttribute = null;
+        }
+    }
+
     private EclipseTask task;
 
+    private Properties state = null;
+
+    private boolean stateChanged = false;
+
+    private Hashtable pendingFingerprints = new Hashtable();
+
+    private ByteBuffer buffer = null;
+
     /**
      * Creates a new instance of the output object.
      * 
@@ -57,41 +266,191 @@ class FileEclipseOutput extends EclipseOutput {
 
     /**
      * Checks if it is necessary to write the content of the file
-     * <tt>.settings/xxx.prefs</tt>; if the file does not exist or it is older than the
-     * decription in the ant project.
+     * <tt>.settings/xxx.prefs</tt>; if the file does not exist or if it was generated
+     * from different inputs.
      * 
      * @param name
      *        A name of the file with preferences.
-     * @return <tt>True</tt> if the file needs to be (re)written.
-     * @see EclipseOutput#isPreferencesUpToDate(String)
+     * @param fingerprint
+     *        The fingerprint of the inputs the content is generated from.
+     * @return <tt>False</tt> if the file needs to be (re)written.
+     * @see EclipseOutput#isPreferencesUpToDate(String, String)
      * @since Ant-Eclipse 1.0
      */
-    boolean isPreferencesUpToDate(String name) {
-        return isFileUpToDate(".settings/" + name + ".prefs");
+    boolean isPreferencesUpToDate(String name, String fingerprint) {
+        return isFileUpToDate("preferences." + name, ".settings/" + name + ".prefs",
+                fingerprint);
     }
 
     /**
      * Checks if it is necessary to write the content of the file .project; if the file
-     * does not exist or it is older than the decription in the ant project.
+     * does not exist or if it was generated from different inputs.
      * 
-     * @return <tt>True</tt> if the file needs to be (re)written.
-     * @see EclipseOutput#isProjectUpToDate()
+     * @param fingerprint
+     *        The fingerprint of the inputs the content is generated from.
+     * @return <tt>False</tt> if the file needs to be (re)written.
+     * @see EclipseOutput#isProjectUpToDate(String)
      * @since Ant-Eclipse 1.0
      */
-    boolean isProjectUpToDate() {
-        return isFileUpToDate(".project");
+    boolean isProjectUpToDate(String fingerprint) {
+        return isFileUpToDate("project", ".project", fingerprint);
     }
 
     /**
      * Checks if it is necessary to write the content of the file .classpath; if the file
-     * does not exist or it is older than the decription in the ant project.
+     * does not exist or if it was generated from different inputs.
+     * 
+     * @param fingerprint
+     *        The fingerprint of the inputs the content is generated from.
+     * @return <tt>False</tt> if the content needs to be (re)written.
+     * @see EclipseOutput#isClassPathUpToDate(String)
+     * @since Ant-Eclipse 1.0
+     */
+    boolean isClassPathUpToDate(String fingerprint) {
+        return isFileUpToDate("classpath", ".classpath", fingerprint);
+    }
+
+    /**
+     * Writes the file <tt>.settings/xxx.prefs</tt> if its content differs.
+     * 
+     * @param name
+     *        A name of the file with preferences.
+     * @param content
+     *        The new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @see EclipseOutput#updatePreferences(String, byte[])
+     * @since Ant-Eclipse 1.0
+     */
+    int updatePreferences(String name, byte[] content) throws IOException {
+        String fileName = ".settings/" + name + ".prefs";
+        File file = resolveFile(fileName);
+        int result = compareFile(file, content);
+        // a file linked to a shared copy before gets a copy of its own
+        if (result != UNCHANGED || isLinked(file))
+            writeFile(fileName, content);
+        recordFingerprint(fileName);
+        return result;
+    }
+
+    /**
+     * Writes the file <tt>.settings/xxx.prefs</tt> if its content differs, as a hard
+     * link to a shared copy of the content stored in the specified directory. The
+     * content is copied if the link cannot be created.
+     * 
+     * @param name
+     *        A name of the file with preferences.
+     * @param content
+     *        The new content of the file.
+     * @param store
+     *        The directory to keep the shared copies in.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @see EclipseOutput#updateSharedPreferences(String, byte[], File)
+     * @since Ant-Eclipse 1.0
+     */
+    int updateSharedPreferences(String name, byte[] content, File store)
+            throws IOException {
+        String fileName = ".settings/" + name + ".prefs";
+        File file = resolveFile(fileName);
+        int result = compareFile(file, content);
+        if (result == UNCHANGED && createLink == null) {
+            recordFingerprint(fileName);
+            return result;
+        }
+        File shared = storeContent(store, name, content);
+        // a file with the same content is linked if it was copied before
+        if (result == UNCHANGED && (shared == null || isSameFile(shared, file))) {
+            recordFingerprint(fileName);
+            return result;
+        }
+        if (shared != null && linkFile(shared, file))
+            task.log("Linked the file \"" + file.getAbsolutePath() + "\" to \""
+                    + shared.getAbsolutePath() + "\".", Project.MSG_VERBOSE);
+        else if (result != UNCHANGED)
+            writeFile(fileName, content);
+        recordFingerprint(fileName);
+        return result;
+    }
+
+    /**
+     * Writes the file .project if its content differs.
+     * 
+     * @param content
+     *        The new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @see EclipseOutput#updateProject(byte[])
+     * @since Ant-Eclipse 1.0
+     */
+    int updateProject(byte[] content) throws IOException {
+        return updateFile(".project", content);
+    }
+
+    /**
+     * Writes the file .classpath if its content differs.
      * 
-     * @return <tt>True</tt> if the content needs to be (re)written.
-     * @see EclipseOutput#isClassPathUpToDate()
+     * @param content
+     *        The new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @see EclipseOutput#updateClassPath(byte[])
      * @since Ant-Eclipse 1.0
      */
-    boolean isClassPathUpToDate() {
-        return isFileUpToDate(".classpath");
+    int updateClassPath(byte[] content) throws IOException {
+        return updateFile(".classpath", content);
+    }
+
+    /**
+     * Writes the file .classpath if its content produced by the writer differs. The
+     * content is written into a temporary file, which is compared with the existing
+     * file and renamed over it only if they differ; it is deleted otherwise, if the
+     * writer drops it or if the writer fails.
+     * 
+     * @param writer
+     *        The writer producing the new content of the file.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error producing the content or reading or writing the
+     *         file.
+     * @see EclipseOutput#updateClassPath(EclipseOutput.ContentWriter)
+     * @since Ant-Eclipse 1.0
+     */
+    int updateClassPath(ContentWriter writer) throws IOException {
+        return updateFile(".classpath", writer);
+    }
+
+    /**
+     * Stores the fingerprints of the generated files into the file
+     * <tt>.settings/.ant-eclipse.state</tt> if some of them changed.
+     * 
+     * @see EclipseOutput#close()
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized void close() {
+        if (!stateChanged)
+            return;
+        OutputStream output = createFile(STATE_FILE);
+        try {
+            try {
+                getState().store(output, "Ant-Eclipse generation state");
+            } finally {
+                output.close();
+            }
+        } catch (IOException exception) {
+            throw new BuildException("Writing the file \""
+                    + resolveFile(STATE_FILE).getAbsolutePath() + "\" failed.", exception);
+        }
+        stateChanged = false;
     }
 
     /**
@@ -100,7 +459,7 @@ class FileEclipseOutput extends EclipseOutput {
      * 
      * @param name
      *        A name of the file with preferences.
-     * @return Input stream for the opened file.
+     * @return Input stream for the opened file or <tt>null</tt> if it does not exist.
      * @see EclipseOutput#openPreferences(String)
      * @since Ant-Eclipse 1.0
      */
@@ -111,7 +470,7 @@ class FileEclipseOutput extends EclipseOutput {
     /**
      * Opens an existing file named ".project" in the destination directory.
      * 
-     * @return Input stream for the opened file.
+     * @return Input stream for the opened file or <tt>null</tt> if it does not exist.
      * @see EclipseOutput#openPreferences(String)
      * @since Ant-Eclipse 1.0
      */
@@ -122,7 +481,7 @@ class FileEclipseOutput extends EclipseOutput {
     /**
      * Opens an existing file named ".classpath" in the destination directory.
      * 
-     * @return Input stream for the opened file.
+     * @return Input stream for the opened file or <tt>null</tt> if it does not exist.
      * @see EclipseOutput#openClassPath()
      * @since Ant-Eclipse 1.0
      */
@@ -166,15 +525,284 @@ class FileEclipseOutput extends EclipseOutput {
         return createFile(".classpath");
     }
 
-    private boolean isFileUpToDate(String name) {
-        return !getEclipse().isUpdateAlways()
-                && FileUtils.getFileUtils().isUpToDate(
-                        resolveFile(task.getProject().getProperty("ant.file")),
-                        resolveFile(name));
+    private synchronized boolean isFileUpToDate(String key, String name, String fingerprint) {
+        boolean upToDate = fingerprint.equals(getState().getProperty(key))
+                && resolveFile(name).isFile() && !getEclipse().isUpdateAlways();
+        // the fingerprint is recorded by the update of the file, a failing update
+        // leaves the previous one in the state
+        if (upToDate)
+            pendingFingerprints.remove(name);
+        else
+            pendingFingerprints.put(name, new String[] { key, fingerprint });
+        return upToDate;
+    }
+
+    private synchronized void recordFingerprint(String name) {
+        String[] pending = (String[]) pendingFingerprints.remove(name);
+        if (pending == null || pending[1].equals(getState().getProperty(pending[0])))
+            return;
+        getState().setProperty(pending[0], pending[1]);
+        stateChanged = true;
+    }
+
+    private synchronized Properties getState() {
+        if (state == null) {
+            state = new Properties();
+            InputStream input = openFile(STATE_FILE);
+            if (input != null)
+                try {
+                    try {
+                        state.load(input);
+                    } finally {
+                        input.close();
+                    }
+                } catch (IOException exception) {
+                    task.log("Reading the file \""
+                            + resolveFile(STATE_FILE).getAbsolutePath() + "\" failed: "
+                            + exception.getMessage(), Project.MSG_WARN);
+                    state.clear();
+                }
+        }
+        return state;
+    }
+
+    private int updateFile(String name, byte[] content) throws IOException {
+        File file = resolveFile(name);
+        int result = compareFile(file, content);
+        if (result != UNCHANGED)
+            writeFile(name, content);
+        recordFingerprint(name);
+        return result;
+    }
+
+    private int updateFile(String name, ContentWriter writer) throws IOException {
+        File file = resolveFile(name);
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            throw new IOException("The directory \"" + directory.getAbsolutePath()
+                    + "\" could not be created.");
+        task.log("Creating the file \"" + file.getAbsolutePath() + "\".",
+                Project.MSG_VERBOSE);
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(
+                    temporary));
+            boolean used;
+            try {
+                used = writer.write(output);
+            } finally {
+                output.close();
+            }
+            if (!used)
+                return UNCHANGED;
+            int result = compareFiles(file, temporary);
+            if (result != UNCHANGED) {
+                File source = temporary;
+                temporary = null;
+                ReplacingOutputStream.rename(source, file);
+            }
+            recordFingerprint(name);
+            return result;
+        } finally {
+            // the temporary file is left over if the content is the same or dropped or
+            // if writing it failed, also by a runtime exception
+            if (temporary != null)
+                temporary.delete();
+        }
+    }
+
+    private void writeFile(String name, byte[] content) throws IOException {
+        ReplacingOutputStream output = (ReplacingOutputStream) createFile(name);
+        try {
+            output.write(ByteBuffer.wrap(content));
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Checks if hard links can be created by the Java runtime.
+     * 
+     * @return <tt>True</tt> if the files can be linked, otherwise <tt>false</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    static boolean canLink() {
+        return createLink != null;
+    }
+
+    private File storeContent(File store, String name, byte[] content) {
+        File file = new File(store, name + "-"
+                + new Fingerprint("content").add(content).getValue() + ".prefs");
+        try {
+            // the stored copy could have been changed through a link to it
+            if (compareFile(file, content) == UNCHANGED)
+                return file;
+            if (!store.isDirectory() && !store.mkdirs() && !store.isDirectory())
+                throw new IOException("The directory \"" + store.getAbsolutePath()
+                        + "\" could not be created.");
+            ReplacingOutputStream output = new ReplacingOutputStream(File.createTempFile(
+                    file.getName(), ".tmp", store), file);
+            try {
+                output.write(ByteBuffer.wrap(content));
+            } finally {
+                output.close();
+            }
+            return file;
+        } catch (IOException exception) {
+            task.log("Storing the shared file \"" + file.getAbsolutePath()
+                    + "\" failed: " + exception.getMessage(), Project.MSG_WARN);
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the file has more hard links. Only file systems which report the
+     * number of links (like the POSIX ones) are supported; <tt>false</tt> is returned
+     * otherwise.
+     * 
+     * @param file
+     *        The file to check.
+     * @return <tt>True</tt> if the file is known to have more hard links.
+     * @since Ant-Eclipse 1.0
+     */
+    static boolean isLinked(File file) {
+        if (getAttribute == null || !file.isFile())
+            return false;
+        try {
+            Object count = getAttribute.invoke(null, new Object[] {
+                    toPath.invoke(file, new Object[0]), "unix:nlink", noLinkOptions });
+            return ((Number) count).intValue() > 1;
+        } catch (Exception exception) {
+            return false;
+        }
+    }
+
+    private static boolean isSameFile(File first, File second) {
+        if (!second.isFile())
+            return false;
+        try {
+            return ((Boolean) isSameFile.invoke(null, new Object[] {
+                    toPath.invoke(first, new Object[0]),
+                    toPath.invoke(second, new Object[0]) })).booleanValue();
+        } catch (Exception exception) {
+            return false;
+        }
+    }
+
+    private boolean linkFile(File shared, File file) throws IOException {
+        if (createLink == null)
+            return false;
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            return false;
+        // the link is created under a temporary name and renamed over the file, so that
+        // the file is replaced atomically like when it is written
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+        temporary.delete();
+        try {
+            createLink.invoke(null, new Object[] {
+                    toPath.invoke(temporary, new Object[0]),
+                    toPath.invoke(shared, new Object[0]) });
+        } catch (Exception exception) {
+            task.log("Linking the file \"" + file.getAbsolutePath() + "\" failed: "
+                    + exception, Project.MSG_VERBOSE);
+            temporary.delete();
+            return false;
+        }
+        ReplacingOutputStream.rename(temporary, file);
+        return true;
+    }
+
+    /**
+     * Compares the content of the file with the specified content, reading the file
+     * into a buffer reused for all files.
+     * 
+     * @param file
+     *        The file to compare.
+     * @param content
+     *        The content to compare the file with.
+     * @return One of the values <tt>CREATED</tt> if the file does not exist,
+     *         <tt>CHANGED</tt> or <tt>UNCHANGED</tt>.
+     * @throws IOException
+     *         If there was an error reading the file.
+     * @since Ant-Eclipse 1.0
+     */
+    int compareFile(File file, byte[] content) throws IOException {
+        if (!file.isFile())
+            return CREATED;
+        if (file.length() != content.length)
+            return CHANGED;
+        FileChannel channel = new FileInputStream(file).getChannel();
+        ByteBuffer buffer = takeBuffer(content.length);
+        try {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1)
+                ;
+            if (buffer.hasRemaining())
+                return CHANGED;
+            byte[] array = buffer.array();
+            for (int i = 0; i != content.length; ++i)
+                if (array[i] != content[i])
+                    return CHANGED;
+            return UNCHANGED;
+        } finally {
+            releaseBuffer(buffer);
+            channel.close();
+        }
+    }
+
+    private static int compareFiles(File file, File other) throws IOException {
+        if (!file.isFile())
+            return CREATED;
+        if (file.length() != other.length())
+            return CHANGED;
+        InputStream input = new FileInputStream(file);
+        try {
+            InputStream otherInput = new FileInputStream(other);
+            try {
+                byte[] buffer = new byte[8192];
+                byte[] otherBuffer = new byte[buffer.length];
+                for (int length; (length = readFully(input, buffer)) != 0;)
+                    if (readFully(otherInput, otherBuffer) != length
+                            || !Arrays.equals(buffer, otherBuffer))
+                        return CHANGED;
+                return UNCHANGED;
+            } finally {
+                otherInput.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private static int readFully(InputStream input, byte[] buffer) throws IOException {
+        int offset = 0;
+        for (int length; offset != buffer.length
+                && (length = input.read(buffer, offset, buffer.length - offset)) != -1;)
+            offset += length;
+        // the rest of the buffer is cleared for the comparison of the last block
+        Arrays.fill(buffer, offset, buffer.length, (byte) 0);
+        return offset;
+    }
+
+    private synchronized ByteBuffer takeBuffer(int length) {
+        ByteBuffer result = buffer;
+        buffer = null;
+        if (result == null || result.capacity() < length)
+            result = ByteBuffer.allocate(Math.max(length, 8192));
+        result.clear();
+        result.limit(length);
+        return result;
+    }
+
+    private synchronized void releaseBuffer(ByteBuffer value) {
+        if (buffer == null || buffer.capacity() < value.capacity())
+            buffer = value;
     }
 
     private InputStream openFile(String name) {
         File input = resolveFile(name);
+        if (!input.isFile())
+            return null;
         try {
             task.log("Opening the file \"" + input.getAbsolutePath() + "\".",
                     Project.MSG_VERBOSE);
@@ -190,8 +818,13 @@ class FileEclipseOutput extends EclipseOutput {
         try {
             task.log("Creating the file \"" + output.getAbsolutePath() + "\".",
                     Project.MSG_VERBOSE);
-            FileUtils.getFileUtils().createNewFile(output, true);
-            return new FileOutputStream(output);
+            File directory = output.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()
+                    && !directory.isDirectory())
+                throw new IOException("The directory \"" + directory.getAbsolutePath()
+                        + "\" could not be created.");
+            return new ReplacingOutputStream(File.createTempFile(output.getName(),
+                    ".tmp", directory), output);
         } catch (IOException exception) {
             throw new BuildException("Creation of the file \"" + output.getAbsolutePath()
                     + "\" falied.", exception);
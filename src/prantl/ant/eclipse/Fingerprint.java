@@ -0,0 +1,138 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Computes a hash of the resolved inputs of a generated file. Two fingerprints are equal
+ * if the same values were added in the same order, which allows detecting whether a
+ * generated file needs to be written again without rendering its content.
+ * 
+ * @see EclipseOutput
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class Fingerprint {
+
+    /**
+     * Version of the format of the generated files, to be changed whenever the
+     * generators start producing a different output for the same inputs.
+     */
+    private static final String FORMAT_VERSION = "1";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private MessageDigest digest;
+
+    private String value = null;
+
+    /**
+     * Creates a new fingerprint for a file of the specified kind.
+     * 
+     * @param kind
+     *        The kind of the generated file, for example "classpath".
+     * @since Ant-Eclipse 1.0
+     */
+    Fingerprint(String kind) {
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new BuildException("The MD5 message digest is not supported.",
+                    exception);
+        }
+        add(FORMAT_VERSION);
+        add(kind);
+    }
+
+    /**
+     * Adds a string value to the fingerprint. A <tt>null</tt> value is distinguished
+     * from an empty string.
+     * 
+     * @param value
+     *        A value to add or <tt>null</tt>.
+     * @return This object to allow chaining the calls.
+     * @since Ant-Eclipse 1.0
+     */
+    Fingerprint add(String value) {
+        if (value == null)
+            digest.update((byte) 1);
+        else {
+            try {
+                digest.update(value.getBytes("UTF-8"));
+            } catch (UnsupportedEncodingException exception) {
+                throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+            }
+            digest.update((byte) 0);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a binary content to the fingerprint.
+     * 
+     * @param value
+     *        A content to add.
+     * @return This object to allow chaining the calls.
+     * @since Ant-Eclipse 1.0
+     */
+    Fingerprint add(byte[] value) {
+        digest.update(value);
+        return this;
+    }
+
+    /**
+     * Adds a boolean value to the fingerprint.
+     * 
+     * @param value
+     *        A value to add.
+     * @return This object to allow chaining the calls.
+     * @since Ant-Eclipse 1.0
+     */
+    Fingerprint add(boolean value) {
+        digest.update(value ? (byte) 't' : (byte) 'f');
+        return this;
+    }
+
+    /**
+     * Finishes the computation and returns the fingerprint as a string of hexadecimal
+     * digits. No more values can be added after calling this method.
+     * 
+     * @return The fingerprint as a string of hexadecimal digits.
+     * @since Ant-Eclipse 1.0
+     */
+    String getValue() {
+        if (value == null) {
+            byte[] hash = digest.digest();
+            char[] result = new char[hash.length * 2];
+            for (int i = 0; i != hash.length; ++i) {
+                result[2 * i] = HEX_DIGITS[(hash[i] >> 4) & 0x0f];
+                result[2 * i + 1] = HEX_DIGITS[hash[i] & 0x0f];
+            }
+            value = new String(result);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,210 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+
+/**
+ * Stores the content of generated files in a directory, keyed by the fingerprint of the
+ * inputs they were generated from. The directory can be shared by more builds and more
+ * machines, for example on a network file system; a file found there is used instead of
+ * rendering the content again. Entries are written into temporary files and renamed to
+ * their final names, so that concurrent readers never see a partially written entry.
+ * Failures of the cache are reported as warnings and handled as misses.
+ * <p>
+ * The cache counts the lookups, the hits and the bytes which did not need to be
+ * rendered; it can be used by more threads concurrently.
+ * </p>
+ * 
+ * @see Fingerprint
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class GenerationCache {
+
+    private File directory;
+
+    private int lookups = 0;
+
+    private int hits = 0;
+
+    private long bytesSaved = 0;
+
+    /**
+     * Creates a new instance of the cache stored in the specified directory.
+     * 
+     * @param directory
+     *        The directory to store the entries in; it is created if it does not exist.
+     * @since Ant-Eclipse 1.0
+     */
+    GenerationCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the content stored for the specified fingerprint or <tt>null</tt> if
+     * there is none.
+     * 
+     * @param task
+     *        The task to log messages with.
+     * @param fingerprint
+     *        The fingerprint of the inputs of the content.
+     * @return The stored content or <tt>null</tt> if not present.
+     * @since Ant-Eclipse 1.0
+     */
+    byte[] get(Task task, String fingerprint) {
+        File file = getFile(fingerprint);
+        byte[] content = null;
+        if (file.isFile())
+            try {
+                content = readFile(file);
+                task.log("Using the cached file \"" + file.getAbsolutePath() + "\".",
+                        Project.MSG_VERBOSE);
+            } catch (IOException exception) {
+                task.log("Reading the cached file \"" + file.getAbsolutePath()
+                        + "\" failed: " + exception.getMessage(), Project.MSG_WARN);
+            }
+        synchronized (this) {
+            ++lookups;
+            if (content != null) {
+                ++hits;
+                bytesSaved += content.length;
+            }
+        }
+        return content;
+    }
+
+    /**
+     * Stores the content for the specified fingerprint unless it is present already.
+     * 
+     * @param task
+     *        The task to log messages with.
+     * @param fingerprint
+     *        The fingerprint of the inputs of the content.
+     * @param content
+     *        The content to store.
+     * @since Ant-Eclipse 1.0
+     */
+    void put(Task task, String fingerprint, byte[] content) {
+        put(task, fingerprint, new ByteArrayInputStream(content));
+    }
+
+    /**
+     * Stores the content read from the specified stream for the specified fingerprint
+     * unless it is present already. The stream is closed.
+     * 
+     * @param task
+     *        The task to log messages with.
+     * @param fingerprint
+     *        The fingerprint of the inputs of the content.
+     * @param content
+     *        The stream with the content to store.
+     * @since Ant-Eclipse 1.0
+     */
+    void put(Task task, String fingerprint, InputStream content) {
+        try {
+            store(task, fingerprint, content);
+        } finally {
+            try {
+                content.close();
+            } catch (IOException exception) {
+            }
+        }
+    }
+
+    private void store(Task task, String fingerprint, InputStream content) {
+        File file = getFile(fingerprint);
+        if (file.isFile())
+            return;
+        File parent = file.getParentFile();
+        File temporary = null;
+        try {
+            if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+                throw new IOException("The directory \"" + parent.getAbsolutePath()
+                        + "\" could not be created.");
+            temporary = File.createTempFile(fingerprint, ".tmp", parent);
+            OutputStream output = new FileOutputStream(temporary);
+            try {
+                byte[] buffer = new byte[8192];
+                for (int length; (length = content.read(buffer)) != -1;)
+                    output.write(buffer, 0, length);
+            } finally {
+                output.close();
+            }
+            // another build may have stored the same content meanwhile
+            if (temporary.renameTo(file) || file.isFile())
+                temporary = null;
+            else
+                throw new IOException("Renaming the file \"" + temporary.getAbsolutePath()
+                        + "\" failed.");
+            task.log("Storing the cached file \"" + file.getAbsolutePath() + "\".",
+                    Project.MSG_VERBOSE);
+        } catch (IOException exception) {
+            task.log("Storing the cached file \"" + file.getAbsolutePath() + "\" failed: "
+                    + exception.getMessage(), Project.MSG_WARN);
+        } finally {
+            if (temporary != null)
+                temporary.delete();
+        }
+    }
+
+    /**
+     * Logs the number of lookups and hits and the size of the content taken from the
+     * cache.
+     * 
+     * @param task
+     *        The task to log the statistics with.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized void logStatistics(Task task) {
+        if (lookups == 0)
+            return;
+        task.log("Generation cache: " + hits + " hits of " + lookups + " lookups ("
+                + hits * 100 / lookups + "%), " + bytesSaved + " bytes saved.");
+    }
+
+    private File getFile(String fingerprint) {
+        return new File(new File(directory, fingerprint.substring(0, 2)), fingerprint);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            for (int length; (length = input.read(buffer)) != -1;)
+                content.write(buffer, 0, length);
+            return content.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+}
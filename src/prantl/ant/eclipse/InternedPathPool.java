@@ -0,0 +1,291 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+/**
+ * Interns strings and paths shared by the resolved classpath entries of a project.
+ * The characters of all strings are stored in a single buffer of bytes and a string is
+ * referred to by its index. Characters below 128 take a single byte, others three bytes
+ * with the highest bit set. A path is split after every separator into segments, which are
+ * interned as strings, and stored as a node of a tree of segments referring to the node
+ * of its parent directory. Paths with a common prefix, like the directory of a
+ * repository with libraries, share the nodes of the prefix, so that a path takes just a
+ * node with two numbers in addition to the segments which are not shared.
+ * <p>
+ * The index <tt>-1</tt> stands for <tt>null</tt>, the node <tt>0</tt> for an empty
+ * path. The tables use open addressing in arrays of numbers, no objects are created per
+ * string or node. The methods are synchronized, an instance can be shared by more
+ * threads.
+ * </p>
+ * 
+ * @see ClassPathEntryStore
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class InternedPathPool {
+
+    private byte[] bytes = new byte[4096];
+
+    private int byteCount = 0;
+
+    // the string i occupies the bytes from offsets[i] to offsets[i + 1]
+    private int[] offsets = new int[257];
+
+    private int stringCount = 0;
+
+    // the slots contain the indexes of strings or nodes increased by one, zero marks an
+    // empty slot
+    private int[] stringSlots = new int[512];
+
+    private int[] parents = new int[256];
+
+    private int[] segments = new int[256];
+
+    private int nodeCount = 1;
+
+    private int[] nodeSlots = new int[512];
+
+    /**
+     * Creates a new empty pool.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    InternedPathPool() {
+    }
+
+    /**
+     * Returns the index of the string, adding it to the pool if it is not there yet.
+     * 
+     * @param value
+     *        The string to intern or <tt>null</tt>.
+     * @return The index of the string or <tt>-1</tt> for <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized int internString(String value) {
+        return value == null ? -1 : internString(value, 0, value.length());
+    }
+
+    /**
+     * Returns the string with the specified index.
+     * 
+     * @param index
+     *        The index of the string or <tt>-1</tt>.
+     * @return A new string or <tt>null</tt> for <tt>-1</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized String getString(int index) {
+        if (index < 0)
+            return null;
+        char[] result = new char[getLength(index)];
+        decode(index, result, 0);
+        return new String(result);
+    }
+
+    /**
+     * Returns the node of the path, adding the missing segments to the pool.
+     * 
+     * @param path
+     *        The path to intern or <tt>null</tt>.
+     * @return The node of the path or <tt>-1</tt> for <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized int internPath(String path) {
+        if (path == null)
+            return -1;
+        int node = 0;
+        for (int start = 0, length = path.length(); start != length;) {
+            int end = start;
+            while (end != length && path.charAt(end) != '/' && path.charAt(end) != '\\')
+                ++end;
+            // the separator belongs to the segment, so that the path is restored exactly
+            if (end != length)
+                ++end;
+            node = internNode(node, internString(path, start, end));
+            start = end;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the path of the specified node.
+     * 
+     * @param node
+     *        The node of the path or <tt>-1</tt>.
+     * @return A new string with the path or <tt>null</tt> for <tt>-1</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized String getPath(int node) {
+        if (node < 0)
+            return null;
+        int length = 0;
+        for (int current = node; current != 0; current = parents[current])
+            length += getLength(segments[current]);
+        char[] result = new char[length];
+        for (int current = node; current != 0; current = parents[current]) {
+            length -= getLength(segments[current]);
+            decode(segments[current], result, length);
+        }
+        return new String(result);
+    }
+
+    private int internString(String value, int start, int end) {
+        int hash = getHash(value, start, end);
+        int mask = stringSlots.length - 1;
+        int slot = hash & mask;
+        for (; stringSlots[slot] != 0; slot = (slot + 1) & mask)
+            if (equals(stringSlots[slot] - 1, value, start, end))
+                return stringSlots[slot] - 1;
+        int length = 0;
+        for (int i = start; i != end; ++i)
+            length += value.charAt(i) < 0x80 ? 1 : 3;
+        if (byteCount + length > bytes.length) {
+            byte[] array = new byte[Math.max(bytes.length * 2, byteCount + length)];
+            System.arraycopy(bytes, 0, array, 0, byteCount);
+            bytes = array;
+        }
+        for (int i = start; i != end; ++i) {
+            char character = value.charAt(i);
+            if (character < 0x80)
+                bytes[byteCount++] = (byte) character;
+            else {
+                bytes[byteCount++] = (byte) (0x80 | character >>> 12);
+                bytes[byteCount++] = (byte) (0x80 | character >>> 6 & 0x3f);
+                bytes[byteCount++] = (byte) (0x80 | character & 0x3f);
+            }
+        }
+        if (stringCount + 2 > offsets.length) {
+            int[] array = new int[offsets.length * 2];
+            System.arraycopy(offsets, 0, array, 0, stringCount + 1);
+            offsets = array;
+        }
+        offsets[++stringCount] = byteCount;
+        stringSlots[slot] = stringCount;
+        // keeping the tables at most half full makes the probe sequences short
+        if (stringCount * 2 > stringSlots.length)
+            rehashStrings();
+        return stringCount - 1;
+    }
+
+    private int internNode(int parent, int segment) {
+        int mask = nodeSlots.length - 1;
+        int slot = getHash(parent, segment) & mask;
+        for (; nodeSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int node = nodeSlots[slot] - 1;
+            if (parents[node] == parent && segments[node] == segment)
+                return node;
+        }
+        if (nodeCount == parents.length) {
+            int[] array = new int[nodeCount * 2];
+            System.arraycopy(parents, 0, array, 0, nodeCount);
+            parents = array;
+            array = new int[nodeCount * 2];
+            System.arraycopy(segments, 0, array, 0, nodeCount);
+            segments = array;
+        }
+        parents[nodeCount] = parent;
+        segments[nodeCount] = segment;
+        nodeSlots[slot] = ++nodeCount;
+        if (nodeCount * 2 > nodeSlots.length)
+            rehashNodes();
+        return nodeCount - 1;
+    }
+
+    private void rehashStrings() {
+        stringSlots = new int[stringSlots.length * 2];
+        int mask = stringSlots.length - 1;
+        for (int i = 0; i != stringCount; ++i) {
+            int slot = getHash(i) & mask;
+            while (stringSlots[slot] != 0)
+                slot = (slot + 1) & mask;
+            stringSlots[slot] = i + 1;
+        }
+    }
+
+    private void rehashNodes() {
+        nodeSlots = new int[nodeSlots.length * 2];
+        int mask = nodeSlots.length - 1;
+        // the node 0 is the empty path, it is never looked up
+        for (int i = 1; i != nodeCount; ++i) {
+            int slot = getHash(parents[i], segments[i]) & mask;
+            while (nodeSlots[slot] != 0)
+                slot = (slot + 1) & mask;
+            nodeSlots[slot] = i + 1;
+        }
+    }
+
+    private boolean equals(int index, String value, int start, int end) {
+        int offset = offsets[index];
+        int limit = offsets[index + 1];
+        for (int i = start; i != end; ++i) {
+            if (offset == limit || value.charAt(i) != decode(offset))
+                return false;
+            offset += bytes[offset] >= 0 ? 1 : 3;
+        }
+        return offset == limit;
+    }
+
+    private int getLength(int index) {
+        int result = 0;
+        for (int i = offsets[index], end = offsets[index + 1]; i != end; ++result)
+            i += bytes[i] >= 0 ? 1 : 3;
+        return result;
+    }
+
+    private void decode(int index, char[] target, int position) {
+        for (int i = offsets[index], end = offsets[index + 1]; i != end; ++position) {
+            target[position] = decode(i);
+            i += bytes[i] >= 0 ? 1 : 3;
+        }
+    }
+
+    private char decode(int offset) {
+        byte value = bytes[offset];
+        if (value >= 0)
+            return (char) value;
+        return (char) ((value & 0x0f) << 12 | (bytes[offset + 1] & 0x3f) << 6
+                | bytes[offset + 2] & 0x3f);
+    }
+
+    private static int getHash(String value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i != end; ++i)
+            hash = 31 * hash + value.charAt(i);
+        return mix(hash);
+    }
+
+    private int getHash(int index) {
+        int hash = 0;
+        for (int i = offsets[index], end = offsets[index + 1]; i != end;) {
+            hash = 31 * hash + decode(i);
+            i += bytes[i] >= 0 ? 1 : 3;
+        }
+        return mix(hash);
+    }
+
+    private static int getHash(int parent, int segment) {
+        return mix(parent * 31 + segment);
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+}
@@ -0,0 +1,280 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Provides the table of the options of the preferences <tt>org.eclipse.jdt.core</tt>
+ * with their allowed values and their default values for the supported compiler
+ * compliance levels. The table is read from the resource <tt>jdtcore-options.txt</tt>
+ * packaged with the classes in parts, when they are used for the first time: the
+ * compliance levels when the table is requested, the options when the first one is
+ * looked up, the allowed values of an option when it is checked and the default values
+ * of a compliance level when the level is used. Options and levels are looked up by
+ * their names through indexes. The table cannot be modified and it can be used by more
+ * threads concurrently.
+ * 
+ * @see OrgEclipseJdtCorePreferencesElement
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class JdtCoreOptions {
+
+    private static final String RESOURCE = "jdtcore-options.txt";
+
+    private static JdtCoreOptions instance = null;
+
+    private Set levels;
+
+    private Hashtable levelIndex = new Hashtable();
+
+    // the columns of the rows of the options split but not parsed yet
+    private String[][] rows;
+
+    private String[] names;
+
+    private Hashtable nameIndex = new Hashtable();
+
+    // the allowed values of every option; null if any value is allowed
+    private Set[] values;
+
+    // flags of the options which allowed values have been parsed
+    private boolean[] parsed;
+
+    // defaults of every option either for all levels or for every level separately
+    private String[][] defaults;
+
+    // the names and the defaults of options with defaults collected for the levels
+    private String[][][] levelDefaults;
+
+    private JdtCoreOptions() {
+    }
+
+    /**
+     * Returns the table of options, reading the compliance levels when called for the
+     * first time.
+     * 
+     * @return The table of options.
+     * @throws BuildException
+     *         If the table cannot be read.
+     * @since Ant-Eclipse 1.0
+     */
+    static synchronized JdtCoreOptions getInstance() {
+        if (instance == null) {
+            JdtCoreOptions result = new JdtCoreOptions();
+            try {
+                result.loadLevels();
+            } catch (IOException exception) {
+                throw new BuildException("Reading the resource \"" + RESOURCE
+                        + "\" failed.", exception);
+            }
+            instance = result;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the supported compiler compliance levels in the order of the table.
+     * 
+     * @return The unmodifiable set of the compliance levels.
+     * @since Ant-Eclipse 1.0
+     */
+    Set getLevels() {
+        return levels;
+    }
+
+    /**
+     * Checks if the specified compiler compliance level is supported.
+     * 
+     * @param level
+     *        The compliance level.
+     * @return <tt>True</tt> if the level is supported.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean isLevel(String level) {
+        return levelIndex.containsKey(level);
+    }
+
+    /**
+     * Returns the allowed values of the specified option or <tt>null</tt> if any value is
+     * allowed or if the option is not known.
+     * 
+     * @param name
+     *        The name of the option.
+     * @return The unmodifiable set of the allowed values or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized Set getValues(String name) {
+        loadOptions();
+        Integer index = (Integer) nameIndex.get(name);
+        if (index == null)
+            return null;
+        int i = index.intValue();
+        if (!parsed[i]) {
+            String[] row = rows[i];
+            if (row.length > 1 && !row[1].equals("*")) {
+                String[] items = split(row[1], ',');
+                LinkedHashSet set = new LinkedHashSet();
+                for (int j = 0; j != items.length; ++j)
+                    set.add(items[j]);
+                values[i] = Collections.unmodifiableSet(set);
+            }
+            parsed[i] = true;
+        }
+        return values[i];
+    }
+
+    /**
+     * Returns the options with default values for the specified compiler compliance
+     * level in the order of the table.
+     * 
+     * @param level
+     *        A supported compliance level.
+     * @return An array with two items: the array of the names and the array of the
+     *         default values of the options. The arrays must not be modified.
+     * @throws BuildException
+     *         If the options cannot be read or if an option does not have a default
+     *         value for every level.
+     * @since Ant-Eclipse 1.0
+     */
+    synchronized String[][] getDefaults(String level) {
+        loadOptions();
+        int column = ((Integer) levelIndex.get(level)).intValue();
+        if (levelDefaults[column] == null) {
+            Vector options = new Vector();
+            Vector results = new Vector();
+            for (int i = 0; i != names.length; ++i) {
+                String[] row = getDefaults(i);
+                if (row == null)
+                    continue;
+                String value = row.length == 1 ? row[0] : row[column];
+                if (!value.equals("-")) {
+                    options.addElement(names[i]);
+                    results.addElement(value);
+                }
+            }
+            levelDefaults[column] = new String[][] {
+                    (String[]) options.toArray(new String[options.size()]),
+                    (String[]) results.toArray(new String[results.size()]) };
+        }
+        return levelDefaults[column];
+    }
+
+    private String[] getDefaults(int index) {
+        String[] row = rows[index];
+        if (defaults[index] == null && row.length > 2) {
+            String[] result = split(row[2], ',');
+            if (result.length != 1 && result.length != levels.size())
+                throw new BuildException("The option \"" + row[0] + "\" in the resource \""
+                        + RESOURCE + "\" does not have a default value for every level.");
+            defaults[index] = result;
+        }
+        return defaults[index];
+    }
+
+    private void loadLevels() throws IOException {
+        BufferedReader reader = openResource();
+        try {
+            String[] row = readRow(reader);
+            if (row == null || !row[0].equals("levels") || row.length != 2)
+                throw new BuildException("The resource \"" + RESOURCE
+                        + "\" does not start with the compliance levels.");
+            String[] columns = split(row[1], ',');
+            LinkedHashSet set = new LinkedHashSet();
+            for (int i = 0; i != columns.length; ++i) {
+                set.add(columns[i]);
+                levelIndex.put(columns[i], new Integer(i));
+            }
+            levels = Collections.unmodifiableSet(set);
+            levelDefaults = new String[columns.length][][];
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void loadOptions() {
+        if (rows != null)
+            return;
+        Vector result = new Vector();
+        try {
+            BufferedReader reader = openResource();
+            try {
+                // the first row with the levels has been read already
+                readRow(reader);
+                for (String[] row; (row = readRow(reader)) != null;)
+                    result.addElement(row);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException exception) {
+            throw new BuildException("Reading the resource \"" + RESOURCE + "\" failed.",
+                    exception);
+        }
+        int size = result.size();
+        names = new String[size];
+        values = new Set[size];
+        parsed = new boolean[size];
+        defaults = new String[size][];
+        for (int i = 0; i != size; ++i) {
+            String[] row = (String[]) result.get(i);
+            names[i] = row[0];
+            nameIndex.put(row[0], new Integer(i));
+        }
+        rows = (String[][]) result.toArray(new String[size][]);
+    }
+
+    private static BufferedReader openResource() throws IOException {
+        InputStream input = JdtCoreOptions.class.getResourceAsStream(RESOURCE);
+        if (input == null)
+            throw new BuildException("The resource \"" + RESOURCE
+                    + "\" was not found with the classes.");
+        return new BufferedReader(new InputStreamReader(input, "ISO-8859-1"));
+    }
+
+    private static String[] readRow(BufferedReader reader) throws IOException {
+        for (String line; (line = reader.readLine()) != null;) {
+            line = line.trim();
+            if (line.length() != 0 && !line.startsWith("#"))
+                return split(line, '|');
+        }
+        return null;
+    }
+
+    private static String[] split(String text, char separator) {
+        StringTokenizer tokenizer = new StringTokenizer(text, String.valueOf(separator));
+        String[] result = new String[tokenizer.countTokens()];
+        for (int i = 0; i != result.length; ++i)
+            result[i] = tokenizer.nextToken().trim();
+        return result;
+    }
+
+}
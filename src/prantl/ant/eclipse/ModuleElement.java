@@ -0,0 +1,182 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Describes a single module under the element <tt>eclipseworkspace</tt> - a directory
+ * to generate an Eclipse project in. The nested elements <tt>settings</tt>,
+ * <tt>project</tt> and <tt>classpath</tt> override the ones defined for the whole
+ * workspace.
+ * 
+ * @see EclipseWorkspaceTask
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class ModuleElement {
+
+    private File dir = null;
+
+    private String name = null;
+
+    private SettingsElement settings = null;
+
+    private ProjectElement project = null;
+
+    private ClassPathElement classPath = null;
+
+    /**
+     * Creates a new instance of the module element.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public ModuleElement() {
+    }
+
+    /**
+     * Returns the directory of the module or <tt>null</tt> if it has not been set,
+     * which should be considered an error.
+     * 
+     * @return The directory of the module or <tt>null</tt> if not having been set.
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * Sets the directory of the module, which the generated files are placed into and
+     * relative paths are resolved against.
+     * 
+     * @param value
+     *        A directory of the module.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setDir(File value) {
+        dir = value;
+    }
+
+    /**
+     * Returns the name of the module or <tt>null</tt> if it has not been set and the
+     * name of the directory should be used.
+     * 
+     * @return The name of the module or <tt>null</tt> if not having been set.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets the name of the module. It is used as the name of the Ant project the module
+     * is generated in, which is the default name of the Eclipse project. The name of the
+     * directory is used by default if not set here.
+     * 
+     * @param value
+     *        A name of the module.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setName(String value) {
+        name = value;
+    }
+
+    /**
+     * @return Returns the settings.
+     */
+    public SettingsElement getSettings() {
+        return settings;
+    }
+
+    /**
+     * Adds a definition of the settings element specific for this module.
+     * 
+     * @return A definition of the settings element.
+     * @throws BuildException
+     *         If another settings element has been defined.
+     * @since Ant-Eclipse 1.0
+     */
+    public SettingsElement createSettings() {
+        if (settings != null)
+            throw new BuildException("The element <settings> has been already defined.");
+        settings = new SettingsElement();
+        return settings;
+    }
+
+    /**
+     * @return Returns the project.
+     */
+    public ProjectElement getProject() {
+        return project;
+    }
+
+    /**
+     * Adds a definition of the project element specific for this module.
+     * 
+     * @return A definition of the project element.
+     * @throws BuildException
+     *         If another project element has been defined.
+     * @since Ant-Eclipse 1.0
+     */
+    public ProjectElement createProject() {
+        if (project != null)
+            throw new BuildException("The element <project> has been already defined.");
+        project = new ProjectElement();
+        return project;
+    }
+
+    /**
+     * @return Returns the classPath.
+     */
+    public ClassPathElement getClassPath() {
+        return classPath;
+    }
+
+    /**
+     * Adds a definition of the classpath element specific for this module.
+     * 
+     * @return A definition of the classpath element.
+     * @throws BuildException
+     *         If another classpath element has been defined.
+     * @since Ant-Eclipse 1.0
+     */
+    public ClassPathElement createClassPath() {
+        if (classPath != null)
+            throw new BuildException("The element <classpath> has been already defined.");
+        classPath = new ClassPathElement();
+        return classPath;
+    }
+
+    /**
+     * Performs the validation of the element at the time when the whole build file was
+     * parsed checking the content of the element.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public void validate() {
+        if (dir == null)
+            throw new BuildException(
+                    "The attribute \"dir\" was missing in the element \"module\".");
+        if (!dir.isDirectory())
+            throw new BuildException("The directory \"" + dir
+                    + "\" of the element \"module\" does not exist.");
+    }
+
+}
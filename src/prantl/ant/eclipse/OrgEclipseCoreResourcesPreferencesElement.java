@@ -19,7 +19,9 @@
 
 package prantl.ant.eclipse;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.tools.ant.BuildException;
 
@@ -39,7 +41,18 @@ public class OrgEclipseCoreResourcesPreferencesElement extends PreferencesElemen
 
     private static final String ENCODING_NAME = "encoding/<project>";
 
-    private static final HashSet ENCODING_VALUES = new HashSet();
+    private static final Set ENCODING_VALUES;
+
+    static {
+        HashSet values = new HashSet();
+        values.add("ISO-8859-1");
+        values.add("US-ASCII");
+        values.add("UTF-16");
+        values.add("UTF-16BE");
+        values.add("UTF-16LE");
+        values.add("UTF-8");
+        ENCODING_VALUES = Collections.unmodifiableSet(values);
+    }
 
     /**
      * Returns the name of the package these preferences belong to.
@@ -61,12 +74,6 @@ public class OrgEclipseCoreResourcesPreferencesElement extends PreferencesElemen
     public OrgEclipseCoreResourcesPreferencesElement(SettingsElement parent) {
         super(parent);
         internalSetName(getPackageName());
-        ENCODING_VALUES.add("ISO-8859-1");
-        ENCODING_VALUES.add("US-ASCII");
-        ENCODING_VALUES.add("UTF-16");
-        ENCODING_VALUES.add("UTF-16BE");
-        ENCODING_VALUES.add("UTF-16LE");
-        ENCODING_VALUES.add("UTF-8");
     }
 
     /**
@@ -116,6 +123,7 @@ public class OrgEclipseCoreResourcesPreferencesElement extends PreferencesElemen
      * @since Ant-Eclipse 1.0
      */
     public void validate() {
+        applyProfile();
         if (!hasVariable(ENCODING_NAME))
             throw new BuildException("The attribute \"" + ENCODING_ATTRIBUTE
                     + "\" (variable \"" + ENCODING_NAME
@@ -19,7 +19,9 @@
 
 package prantl.ant.eclipse;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.apache.tools.ant.BuildException;
 
@@ -39,7 +41,15 @@ public class OrgEclipseCoreRuntimePreferencesElement extends PreferencesElement
 
     private static final String LINESEPARATOR_NAME = "line.separator";
 
-    private static final HashMap LINESEPARATOR_VALUES = new HashMap();
+    private static final Map LINESEPARATOR_VALUES;
+
+    static {
+        HashMap values = new HashMap();
+        values.put("unix", "\\n");
+        values.put("macintosh", "\\r");
+        values.put("windows", "\\r\\n");
+        LINESEPARATOR_VALUES = Collections.unmodifiableMap(values);
+    }
 
     /**
      * Returns the name of the package these preferences belong to.
@@ -61,9 +71,6 @@ public class OrgEclipseCoreRuntimePreferencesElement extends PreferencesElement
     public OrgEclipseCoreRuntimePreferencesElement(SettingsElement parent) {
         super(parent);
         internalSetName(getPackageName());
-        LINESEPARATOR_VALUES.put("unix", "\\n");
-        LINESEPARATOR_VALUES.put("macintosh", "\\r");
-        LINESEPARATOR_VALUES.put("windows", "\\r\\n");
     }
 
     /**
@@ -114,6 +121,7 @@ public class OrgEclipseCoreRuntimePreferencesElement extends PreferencesElement
      * @since Ant-Eclipse 1.0
      */
     public void validate() {
+        applyProfile();
         if (!hasVariable(LINESEPARATOR_NAME))
             throw new BuildException("The attribute \"" + LINESEPARATOR_ATTRIBUTE
                     + "\" (variable \"" + LINESEPARATOR_NAME
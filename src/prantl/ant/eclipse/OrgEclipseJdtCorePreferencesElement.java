@@ -19,15 +19,22 @@
 
 package prantl.ant.eclipse;
 
-import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.Set;
+import java.util.Vector;
 
 import org.apache.tools.ant.BuildException;
 
 /**
  * Configures the component preferences file <tt>.settings/org.eclipse.jdt.core.prefs</tt>
  * on the high level using attributes for the typical constellations of variable values.
+ * <p>
+ * The supported compiler compliance levels, the default values of variables for them
+ * and the allowed values of the known variables are read from a table packaged with
+ * the classes, see the class JdtCoreOptions. Values of the known variables are checked
+ * during the validation.
+ * </p>
  * 
+ * @see JdtCoreOptions
  * @since Ant-Eclipse 1.0
  * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
  */
@@ -39,22 +46,6 @@ public class OrgEclipseJdtCorePreferencesElement extends PreferencesElement {
 
     private static final String COMPILERCOMPLIANCE_NAME = "org.eclipse.jdt.core.compiler.compliance";
 
-    private static final HashSet COMPILERCOMPLIANCE_VALUES = new HashSet();
-
-    private static final String[] ORGECLIPSEJDTCORE_NAMES = {
-            "org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode",
-            "org.eclipse.jdt.core.compiler.codegen.targetPlatform",
-            "org.eclipse.jdt.core.compiler.codegen.unusedLocal",
-            "org.eclipse.jdt.core.compiler.compliance",
-            "org.eclipse.jdt.core.compiler.debug.lineNumber",
-            "org.eclipse.jdt.core.compiler.debug.localVariable",
-            "org.eclipse.jdt.core.compiler.debug.sourceFile",
-            "org.eclipse.jdt.core.compiler.problem.assertIdentifier",
-            "org.eclipse.jdt.core.compiler.problem.enumIdentifier",
-            "org.eclipse.jdt.core.compiler.source" };
-
-    private static final Hashtable ORGECLIPSEJDTCORE_DEFAULTS = new Hashtable();
-
     /**
      * Returns the name of the package these preferences belong to.
      * 
@@ -75,54 +66,6 @@ public class OrgEclipseJdtCorePreferencesElement extends PreferencesElement {
     public OrgEclipseJdtCorePreferencesElement(SettingsElement parent) {
         super(parent);
         internalSetName(getPackageName());
-        COMPILERCOMPLIANCE_VALUES.add("1.3");
-        COMPILERCOMPLIANCE_VALUES.add("1.4");
-        COMPILERCOMPLIANCE_VALUES.add("5.0");
-        COMPILERCOMPLIANCE_VALUES.add("6.0");
-        ORGECLIPSEJDTCORE_DEFAULTS.put("1.3", new String[] { "enabled", // org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode
-                "1.1", // org.eclipse.jdt.core.compiler.codegen.targetPlatform
-                "preserve", // org.eclipse.jdt.core.compiler.codegen.unusedLocal
-                "1.3", // org.eclipse.jdt.core.compiler.compliance
-                "generate", // org.eclipse.jdt.core.compiler.debug.lineNumber
-                "generate", // org.eclipse.jdt.core.compiler.debug.localVariable
-                "generate", // org.eclipse.jdt.core.compiler.debug.sourceFile
-                "ignore", // org.eclipse.jdt.core.compiler.problem.assertIdentifier
-                "ignore", // org.eclipse.jdt.core.compiler.problem.enumIdentifier
-                "1.3" // org.eclipse.jdt.core.compiler.source
-        });
-        ORGECLIPSEJDTCORE_DEFAULTS.put("1.4", new String[] { "enabled", // org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode
-                "1.2", // org.eclipse.jdt.core.compiler.codegen.targetPlatform
-                "preserve", // org.eclipse.jdt.core.compiler.codegen.unusedLocal
-                "1.4", // org.eclipse.jdt.core.compiler.compliance
-                "generate", // org.eclipse.jdt.core.compiler.debug.lineNumber
-                "generate", // org.eclipse.jdt.core.compiler.debug.localVariable
-                "generate", // org.eclipse.jdt.core.compiler.debug.sourceFile
-                "warning", // org.eclipse.jdt.core.compiler.problem.assertIdentifier
-                "warning", // org.eclipse.jdt.core.compiler.problem.enumIdentifier
-                "1.3" // org.eclipse.jdt.core.compiler.source
-        });
-        ORGECLIPSEJDTCORE_DEFAULTS.put("5.0", new String[] { "enabled", // org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode
-                "1.5", // org.eclipse.jdt.core.compiler.codegen.targetPlatform
-                "preserve", // org.eclipse.jdt.core.compiler.codegen.unusedLocal
-                "1.5", // org.eclipse.jdt.core.compiler.compliance
-                "generate", // org.eclipse.jdt.core.compiler.debug.lineNumber
-                "generate", // org.eclipse.jdt.core.compiler.debug.localVariable
-                "generate", // org.eclipse.jdt.core.compiler.debug.sourceFile
-                "error", // org.eclipse.jdt.core.compiler.problem.assertIdentifier
-                "error", // org.eclipse.jdt.core.compiler.problem.enumIdentifier
-                "1.5" // org.eclipse.jdt.core.compiler.source
-        });
-        ORGECLIPSEJDTCORE_DEFAULTS.put("6.0", new String[] { "enabled", // org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode
-                "1.6", // org.eclipse.jdt.core.compiler.codegen.targetPlatform
-                "preserve", // org.eclipse.jdt.core.compiler.codegen.unusedLocal
-                "1.6", // org.eclipse.jdt.core.compiler.compliance
-                "generate", // org.eclipse.jdt.core.compiler.debug.lineNumber
-                "generate", // org.eclipse.jdt.core.compiler.debug.localVariable
-                "generate", // org.eclipse.jdt.core.compiler.debug.sourceFile
-                "error", // org.eclipse.jdt.core.compiler.problem.assertIdentifier
-                "error", // org.eclipse.jdt.core.compiler.problem.enumIdentifier
-                "1.6" // org.eclipse.jdt.core.compiler.source
-        });
     }
 
     /**
@@ -146,7 +89,7 @@ public class OrgEclipseJdtCorePreferencesElement extends PreferencesElement {
      * @since Ant-Eclipse 1.0
      */
     public void setCompilerCompliance(String value) {
-        if (!COMPILERCOMPLIANCE_VALUES.contains(value))
+        if (!JdtCoreOptions.getInstance().isLevel(value))
             throw new BuildException("The attribute \"" + COMPILERCOMPLIANCE_ATTRIBUTE
                     + "\" (variable \"" + COMPILERCOMPLIANCE_NAME
                     + "\") has an invalid value \"" + value + "\". Valid values are "
@@ -162,7 +105,7 @@ public class OrgEclipseJdtCorePreferencesElement extends PreferencesElement {
      * @since Ant-Eclipse 1.0
      */
     String getValidCompilerComplianceValues() {
-        return getValidValues(COMPILERCOMPLIANCE_VALUES);
+        return getValidValues(JdtCoreOptions.getInstance().getLevels());
     }
 
     /**
@@ -173,15 +116,30 @@ public class OrgEclipseJdtCorePreferencesElement extends PreferencesElement {
      * @since Ant-Eclipse 1.0
      */
     public void validate() {
+        applyProfile();
         VariableElement variable = getVariable(COMPILERCOMPLIANCE_NAME);
         if (variable == null)
             throw new BuildException("The attribute \"" + COMPILERCOMPLIANCE_ATTRIBUTE
                     + "\" (variable \"" + COMPILERCOMPLIANCE_NAME
                     + "\") was missing in the element \"" + ELEMENT + "\".");
-        String[] defaults = (String[]) ORGECLIPSEJDTCORE_DEFAULTS
-                .get(variable.getValue());
-        for (int i = 0; i < ORGECLIPSEJDTCORE_NAMES.length; ++i)
-            internalAddVariable(ORGECLIPSEJDTCORE_NAMES[i], defaults[i]);
+        JdtCoreOptions options = JdtCoreOptions.getInstance();
+        // the value read from a profile has not been checked by the attribute setter
+        if (!options.isLevel(variable.getValue()))
+            throw new BuildException("The variable \"" + COMPILERCOMPLIANCE_NAME
+                    + "\" has an invalid value \"" + variable.getValue()
+                    + "\". Valid values are " + getValidCompilerComplianceValues() + ".");
+        String[][] defaults = options.getDefaults(variable.getValue());
+        for (int i = 0; i != defaults[0].length; ++i)
+            internalAddVariable(defaults[0][i], defaults[1][i]);
+        Vector variables = getVariables();
+        for (int i = 0, size = variables.size(); i != size; ++i) {
+            VariableElement element = (VariableElement) variables.get(i);
+            Set values = options.getValues(element.getName());
+            if (values != null && !values.contains(element.getValue()))
+                throw new BuildException("The variable \"" + element.getName()
+                        + "\" has an invalid value \"" + element.getValue()
+                        + "\". Valid values are " + getValidValues(values) + ".");
+        }
 
         super.validate();
     }
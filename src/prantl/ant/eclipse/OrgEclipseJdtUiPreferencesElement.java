@@ -19,7 +19,9 @@
 
 package prantl.ant.eclipse;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Set;
 
 import org.apache.tools.ant.BuildException;
 
@@ -39,7 +41,14 @@ public class OrgEclipseJdtUiPreferencesElement extends PreferencesElement {
 
     private static final String COMPLIANCE_DEFAULT = "user";
 
-    private static final HashSet COMPLIANCE_VALUES = new HashSet();
+    private static final Set COMPLIANCE_VALUES;
+
+    static {
+        HashSet values = new HashSet();
+        values.add("default");
+        values.add("user");
+        COMPLIANCE_VALUES = Collections.unmodifiableSet(values);
+    }
 
     /**
      * Returns the name of the package these preferences belong to.
@@ -61,8 +70,6 @@ public class OrgEclipseJdtUiPreferencesElement extends PreferencesElement {
     public OrgEclipseJdtUiPreferencesElement(SettingsElement parent) {
         super(parent);
         internalSetName(getPackageName());
-        COMPLIANCE_VALUES.add("default");
-        COMPLIANCE_VALUES.add("user");
     }
 
     /**
@@ -112,6 +119,7 @@ public class OrgEclipseJdtUiPreferencesElement extends PreferencesElement {
      * @since Ant-Eclipse 1.0
      */
     public void validate() {
+        applyProfile();
         if (!hasVariable(COMPLIANCE_NAME))
             setCompliance(COMPLIANCE_DEFAULT);
         super.validate();
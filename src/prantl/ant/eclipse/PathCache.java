@@ -0,0 +1,290 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Vector;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.types.AbstractFileSet;
+import org.apache.tools.ant.types.DataType;
+import org.apache.tools.ant.types.FileList;
+import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.Reference;
+import org.apache.tools.ant.types.resources.BaseResourceCollectionContainer;
+
+/**
+ * Caches lists of items of resolved path references, so that the same path referred to
+ * from more elements or more invocations of the task is scanned only once. The cache is
+ * stored as a reference in the Ant project; it does not support cloning and thus it is
+ * shared with sub-projects started by the tasks <tt>ant</tt> and <tt>subant</tt> only
+ * if they inherit references (<tt>inheritrefs=&quot;true&quot;</tt>, which is not the
+ * default); otherwise every sub-project gets a cache of its own.
+ * <p>
+ * A list is cached under a fingerprint of the definition of the path: the locations of
+ * the path elements, the directories, patterns and files of the filesets, dirsets and
+ * filelists, so that a copy of the path made for a sub-project finds the list cached
+ * for the original. Paths with selectors or other resource collections, which cannot
+ * be described without scanning them, are cached under their reference as long as it
+ * points to the same object.
+ * </p>
+ * <p>
+ * A cached list is used only if none of the base directories of the filesets and none
+ * of the directories between them and the listed items has been modified since the
+ * list was cached and if they contain the same number of files and subdirectories;
+ * adding or removing a file or a subdirectory in such a directory makes the path to
+ * be scanned again. The number of entries catches changes hidden by a coarse time of
+ * the last modification (one or two seconds on some file systems), except for
+ * replacing an entry by another one within that time. The cache can be used by more
+ * threads concurrently.
+ * </p>
+ * 
+ * @see ClassPathGenerator
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class PathCache {
+
+    /**
+     * Contains a cached list of items of a path reference with the information needed to
+     * check its validity.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static class CachedPath {
+
+        Object source;
+        String[] items;
+        File[] directories;
+        long[] timestamps;
+        int[] counts;
+
+    }
+
+    private static final String REFERENCE = "ant-eclipse.pathcache";
+
+    private static Field union = null;
+
+    private static Method getResourceCollections = null;
+
+    static {
+        // the nested elements of a path are not accessible by a public method
+        try {
+            union = Path.class.getDeclaredField("union");
+            union.setAccessible(true);
+            getResourceCollections = BaseResourceCollectionContainer.class
+                    .getDeclaredMethod("getResourceCollections", new Class[0]);
+            getResourceCollections.setAccessible(true);
+        } catch (Exception exception) {
+            union = null;
+            getResourceCollections = null;
+        }
+    }
+
+    private Hashtable paths = new Hashtable();
+
+    /**
+     * Creates a new empty instance of the cache.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    private PathCache() {
+    }
+
+    /**
+     * Returns the cache stored in the specified project, creating it if not present yet.
+     * 
+     * @param project
+     *        The project to get the cache from.
+     * @return The cache of resolved paths for the project.
+     * @since Ant-Eclipse 1.0
+     */
+    static PathCache getInstance(Project project) {
+        synchronized (PathCache.class) {
+            PathCache cache = (PathCache) project.getReference(REFERENCE);
+            if (cache == null) {
+                cache = new PathCache();
+                project.addReference(REFERENCE, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Returns items of the path the specified reference points to, either from the
+     * cache or by resolving the path. The returned array must not be modified.
+     * 
+     * @param task
+     *        The task to resolve the reference in the project of and to log through.
+     * @param reference
+     *        The reference to a path.
+     * @return An array with absolute paths of all items of the referenced path.
+     * @since Ant-Eclipse 1.0
+     */
+    String[] list(Task task, Reference reference) {
+        Project project = task.getProject();
+        Object source = reference.getReferencedObject(project);
+        Vector bases = new Vector();
+        String key = getDefinition(project, source, bases);
+        if (key == null)
+            key = "#" + reference.getRefId();
+        else
+            source = null;
+        CachedPath cached = (CachedPath) paths.get(key);
+        if (cached != null && cached.source == source && isValid(cached)) {
+            task.log("Using the cached content of the path \"" + reference.getRefId()
+                    + "\".", Project.MSG_DEBUG);
+            return cached.items;
+        }
+        Path path = new Path(project);
+        path.setRefid(reference);
+        cached = new CachedPath();
+        cached.source = source;
+        cached.items = path.list();
+        HashSet directories = new HashSet(bases);
+        for (int i = 0; i != cached.items.length; ++i) {
+            File directory = new File(cached.items[i]).getParentFile();
+            // the directories up to the base of the fileset are stamped too, so that a
+            // new subdirectory is noticed wherever it is created
+            boolean nested = isNested(cached.items[i], bases);
+            while (directory != null && directories.add(directory) && nested)
+                directory = directory.getParentFile();
+        }
+        cached.directories = (File[]) directories.toArray(new File[directories.size()]);
+        cached.timestamps = new long[cached.directories.length];
+        cached.counts = new int[cached.directories.length];
+        for (int i = 0; i != cached.directories.length; ++i) {
+            cached.timestamps[i] = cached.directories[i].lastModified();
+            cached.counts[i] = countFiles(cached.directories[i]);
+        }
+        paths.put(key, cached);
+        return cached.items;
+    }
+
+    /**
+     * Computes a fingerprint of the definition of a path without scanning it and
+     * collects the base directories of its filesets and dirsets.
+     * 
+     * @param project
+     *        The project to resolve the path in.
+     * @param path
+     *        The path or other resource collection to describe.
+     * @param bases
+     *        The list to add the base directories into.
+     * @return The fingerprint of the definition of the path or <tt>null</tt> if it
+     *         cannot be described.
+     * @since Ant-Eclipse 1.0
+     */
+    static String getDefinition(Project project, Object path, Vector bases) {
+        Fingerprint fingerprint = new Fingerprint("path");
+        try {
+            return addDefinition(fingerprint, project, path, bases) ? fingerprint
+                    .getValue() : null;
+        } catch (Exception exception) {
+            return null;
+        }
+    }
+
+    private static boolean addDefinition(Fingerprint fingerprint, Project project,
+            Object collection, Vector bases) throws Exception {
+        if (collection instanceof DataType && ((DataType) collection).isReference())
+            return addDefinition(fingerprint, project, ((DataType) collection).getRefid()
+                    .getReferencedObject(project), bases);
+        if (collection instanceof Path) {
+            if (union == null)
+                return false;
+            Object container = union.get(collection);
+            List collections = container == null ? new Vector()
+                    : (List) getResourceCollections.invoke(container, new Object[0]);
+            fingerprint.add("path").add(String.valueOf(collections.size()));
+            for (int i = 0, size = collections.size(); i != size; ++i)
+                if (!addDefinition(fingerprint, project, collections.get(i), bases))
+                    return false;
+            return true;
+        }
+        if (collection instanceof Path.PathElement) {
+            String[] parts = ((Path.PathElement) collection).getParts();
+            fingerprint.add("pathelement");
+            addValues(fingerprint, parts);
+            return true;
+        }
+        if (collection instanceof AbstractFileSet) {
+            AbstractFileSet fileSet = (AbstractFileSet) collection;
+            if (fileSet.hasSelectors())
+                return false;
+            File directory = fileSet.getDir(project);
+            fingerprint.add(fileSet.getClass().getName()).add(directory.getPath()).add(
+                    fileSet.getDefaultexcludes()).add(fileSet.isCaseSensitive()).add(
+                    fileSet.isFollowSymlinks());
+            addValues(fingerprint, fileSet.mergeIncludes(project));
+            addValues(fingerprint, fileSet.mergeExcludes(project));
+            bases.addElement(directory);
+            return true;
+        }
+        if (collection instanceof FileList) {
+            FileList fileList = (FileList) collection;
+            fingerprint.add("filelist").add(fileList.getDir(project).getPath());
+            addValues(fingerprint, fileList.getFiles(project));
+            return true;
+        }
+        return false;
+    }
+
+    private static void addValues(Fingerprint fingerprint, String[] values) {
+        if (values == null) {
+            fingerprint.add((String) null);
+            return;
+        }
+        fingerprint.add(String.valueOf(values.length));
+        for (int i = 0; i != values.length; ++i)
+            fingerprint.add(values[i]);
+    }
+
+    private static boolean isNested(String item, Vector bases) {
+        for (int i = 0, size = bases.size(); i != size; ++i) {
+            String base = ((File) bases.get(i)).getPath();
+            if (item.length() > base.length() && item.startsWith(base)
+                    && item.charAt(base.length()) == File.separatorChar)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isValid(CachedPath cached) {
+        for (int i = 0; i != cached.directories.length; ++i)
+            if (cached.directories[i].lastModified() != cached.timestamps[i]
+                    || countFiles(cached.directories[i]) != cached.counts[i])
+                return false;
+        return true;
+    }
+
+    private static int countFiles(File directory) {
+        String[] names = directory.list();
+        return names == null ? -1 : names.length;
+    }
+
+}
@@ -0,0 +1,209 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+/**
+ * Compact set of paths used to remove duplicate classpath entries without keeping any
+ * objects or copies of the paths in memory. A path is referred to by its occurrence:
+ * the index of the classpath element and the index of the item in the element. Only
+ * the 64-bit hash of the path and its first occurrence are stored for every distinct
+ * path together with the index of the last element containing it. A path is looked up
+ * by its hash and the path of the first occurrence is computed again by the supplied
+ * object on a match of the hash, so that different paths with the same hash are not
+ * taken for duplicates. The table uses open addressing in parallel arrays.
+ * 
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class PathHashIndex {
+
+    /**
+     * Computes the path of an occurrence recorded in the index.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static abstract class Paths {
+
+        /**
+         * Returns the path of the specified item of the specified element.
+         * 
+         * @param element
+         *        The index of the element.
+         * @param item
+         *        The index of the item in the element.
+         * @return The path of the item.
+         * @since Ant-Eclipse 1.0
+         */
+        abstract String getPath(int element, int item);
+
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Paths paths;
+
+    private long[] hashes;
+
+    // the elements of the first occurrences are increased by one, zero marks an empty
+    // slot
+    private int[] elements;
+
+    private int[] items;
+
+    private int[] lasts;
+
+    private int size = 0;
+
+    /**
+     * Creates a new empty index for the specified maximum number of paths.
+     * 
+     * @param capacity
+     *        The maximum number of distinct paths to be stored.
+     * @param paths
+     *        The object computing the paths of the recorded occurrences.
+     * @since Ant-Eclipse 1.0
+     */
+    PathHashIndex(int capacity, Paths paths) {
+        this.paths = paths;
+        int length = 16;
+        // keeping the table at most half full makes the probe sequences short
+        while (length < capacity * 2)
+            length <<= 1;
+        hashes = new long[length];
+        elements = new int[length];
+        items = new int[length];
+        lasts = new int[length];
+    }
+
+    /**
+     * Returns the 64-bit FNV-1a hash of the path.
+     * 
+     * @param path
+     *        The path to compute the hash of.
+     * @return The hash of the path.
+     * @since Ant-Eclipse 1.0
+     */
+    static long hash(String path) {
+        long result = FNV_OFFSET;
+        for (int i = 0, length = path.length(); i != length; ++i) {
+            char character = path.charAt(i);
+            result = (result ^ (character & 0xff)) * FNV_PRIME;
+            result = (result ^ (character >>> 8)) * FNV_PRIME;
+        }
+        return result;
+    }
+
+    /**
+     * Records an occurrence of the path in the specified item of the classpath element
+     * with the specified index. Elements are expected to be recorded in the ascending
+     * order of their indexes.
+     * 
+     * @param hash
+     *        The hash of the path.
+     * @param path
+     *        The path.
+     * @param element
+     *        The index of the element containing the path.
+     * @param item
+     *        The index of the item with the path in the element.
+     * @return <tt>True</tt> if the path was not recorded before.
+     * @throws IllegalStateException
+     *         If the index is full.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean put(long hash, String path, int element, int item) {
+        int slot = find(hash, path, element, item);
+        if (elements[slot] != 0) {
+            lasts[slot] = element;
+            return false;
+        }
+        if ((size + 1) * 2 > hashes.length)
+            throw new IllegalStateException("The index of paths is full.");
+        hashes[slot] = hash;
+        elements[slot] = element + 1;
+        items[slot] = item;
+        lasts[slot] = element;
+        ++size;
+        return true;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the path was recorded.
+     * 
+     * @param hash
+     *        The hash of the path.
+     * @param path
+     *        The path.
+     * @return <tt>True</tt> if the path was recorded.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean contains(long hash, String path) {
+        return elements[find(hash, path, -1, -1)] != 0;
+    }
+
+    /**
+     * Returns the index of the last element containing the path if the specified
+     * occurrence is the first one of the path, otherwise <tt>-1</tt>.
+     * 
+     * @param hash
+     *        The hash of the path.
+     * @param path
+     *        The path.
+     * @param element
+     *        The index of the element containing the path.
+     * @param item
+     *        The index of the item with the path in the element.
+     * @return The index of the last element containing the path or <tt>-1</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    int getLast(long hash, String path, int element, int item) {
+        int slot = find(hash, path, element, item);
+        return elements[slot] == element + 1 && items[slot] == item ? lasts[slot] : -1;
+    }
+
+    /**
+     * Returns the number of the distinct paths recorded.
+     * 
+     * @return The number of the distinct paths.
+     * @since Ant-Eclipse 1.0
+     */
+    int size() {
+        return size;
+    }
+
+    private int find(long hash, String path, int element, int item) {
+        int mask = hashes.length - 1;
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (elements[slot] != 0
+                && (hashes[slot] != hash || !matches(slot, path, element, item)))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // the path is computed again only if the slot records another occurrence
+    private boolean matches(int slot, String path, int element, int item) {
+        return elements[slot] == element + 1 && items[slot] == item
+                || paths.getPath(elements[slot] - 1, items[slot]).equals(path);
+    }
+
+}
@@ -0,0 +1,206 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/**
+ * Makes paths relative to the directory of an Eclipse project. The directory of the
+ * project and the base directory of the Ant project are split into segments and stored
+ * in a tree once, both with their absolute and canonical paths. A path is relativized by
+ * walking its segments down the tree in a single pass; only whole segments are matched,
+ * so that <tt>/work/app2/a.jar</tt> is not taken for a path under <tt>/work/app</tt>.
+ * <p>
+ * Paths under the directory of the project are written relative to it. Other paths
+ * under the base directory are written relative to the base directory unless the paths
+ * relative to parents are enabled, which writes paths sharing a directory with the
+ * project with leading <tt>../</tt> segments. Other paths are left unchanged.
+ * </p>
+ * <p>
+ * Canonical paths of the directories are cached for all instances, so that they are
+ * computed once for more modules sharing the same directories.
+ * </p>
+ * 
+ * @see ClassPathGenerator
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class PathRelativizer {
+
+    /**
+     * A segment of a directory in the tree. Nodes have usually a single child, they are
+     * looked up without creating substrings of the relativized paths.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    private static final class Node {
+
+        String[] names = new String[0];
+        Node[] children = new Node[0];
+        int depth;
+        boolean root = false;
+        boolean ancestor = false;
+
+        Node(int depth) {
+            this.depth = depth;
+        }
+
+        Node getChild(String path, int start, int end) {
+            int length = end - start;
+            for (int i = 0; i != names.length; ++i)
+                if (names[i].length() == length
+                        && path.regionMatches(start, names[i], 0, length))
+                    return children[i];
+            return null;
+        }
+
+        Node addChild(String name) {
+            Node child = getChild(name, 0, name.length());
+            if (child != null)
+                return child;
+            String[] newNames = new String[names.length + 1];
+            System.arraycopy(names, 0, newNames, 0, names.length);
+            newNames[names.length] = name;
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            newChildren[children.length] = child = new Node(depth + 1);
+            names = newNames;
+            children = newChildren;
+            return child;
+        }
+
+    }
+
+    private static final Hashtable canonicalPaths = new Hashtable();
+
+    private Node tree = new Node(0);
+
+    private int projectDepth;
+
+    private boolean parents;
+
+    /**
+     * Creates a new instance for the specified directories.
+     * 
+     * @param projectDirectory
+     *        The directory of the Eclipse project.
+     * @param baseDirectory
+     *        The base directory of the Ant project.
+     * @param parents
+     *        <tt>True</tt> if paths outside the directory of the project should be
+     *        written with leading <tt>../</tt> segments.
+     * @since Ant-Eclipse 1.0
+     */
+    PathRelativizer(File projectDirectory, File baseDirectory, boolean parents) {
+        this.parents = parents;
+        String path = projectDirectory.getAbsolutePath();
+        // the parent segments are computed for the absolute path only, which is the form
+        // the paths resolved by Ant come in
+        Node node = addDirectory(path, true);
+        node.root = true;
+        projectDepth = node.depth;
+        addDirectory(getCanonicalPath(path), false).root = true;
+        if (!parents) {
+            path = baseDirectory.getAbsolutePath();
+            addDirectory(path, false).root = true;
+            addDirectory(getCanonicalPath(path), false).root = true;
+        }
+    }
+
+    /**
+     * Returns the path relative to the directory of the project, if possible.
+     * 
+     * @param path
+     *        The path to relativize.
+     * @return The relative path or the same path if it could not be relativized.
+     * @since Ant-Eclipse 1.0
+     */
+    String relativize(String path) {
+        Node node = tree;
+        int rootEnd = -1;
+        int ancestorEnd = -1;
+        int ancestorDepth = 0;
+        for (int start = 0, length = path.length(); node != null;) {
+            int end = start;
+            while (end != length && !isSeparator(path.charAt(end)))
+                ++end;
+            node = node.getChild(path, start, end);
+            if (node == null)
+                break;
+            int next = end == length ? length : end + 1;
+            if (node.root)
+                rootEnd = next;
+            if (node.ancestor) {
+                ancestorEnd = next;
+                ancestorDepth = node.depth;
+            }
+            if (end == length)
+                break;
+            start = next;
+        }
+        if (rootEnd >= 0)
+            return path.substring(rootEnd);
+        // the root of the file system alone is not a common directory
+        if (!parents || ancestorDepth < 2)
+            return path;
+        StringBuffer result = new StringBuffer();
+        for (int i = ancestorDepth; i != projectDepth; ++i)
+            result.append("..").append(File.separatorChar);
+        return result.append(path.substring(ancestorEnd)).toString();
+    }
+
+    private Node addDirectory(String path, boolean ancestor) {
+        Node node = tree;
+        for (int start = 0, length = path.length(); start <= length;) {
+            int end = start;
+            while (end != length && !isSeparator(path.charAt(end)))
+                ++end;
+            // a trailing separator does not make another segment
+            if (end == length && end == start && start != 0)
+                break;
+            node = node.addChild(path.substring(start, end));
+            if (ancestor)
+                node.ancestor = true;
+            start = end + 1;
+        }
+        return node;
+    }
+
+    private static boolean isSeparator(char character) {
+        return character == '/' || character == File.separatorChar;
+    }
+
+    private static String getCanonicalPath(String path) {
+        String result = (String) canonicalPaths.get(path);
+        if (result == null) {
+            try {
+                result = new File(path).getCanonicalPath();
+            } catch (IOException exception) {
+                result = path;
+            }
+            canonicalPaths.put(path, result);
+        }
+        return result;
+    }
+
+}
@@ -19,6 +19,8 @@
 
 package prantl.ant.eclipse;
 
+import java.io.File;
+import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.Vector;
@@ -29,14 +31,26 @@ import org.apache.tools.ant.BuildException;
  * Configures a component preferences in a file under the directory <tt>.settings</tt>
  * using variable elements. The version element is mandatory and will be generated
  * automatically if not provided. The attributes <tt>name</tt> of all elements
- * describing the preferences must be distinct.
+ * describing the preferences must be distinct. Variables are kept in the order of their
+ * definition and indexed by their names.
+ * <p>
+ * Variables can be read from a profile exported by Eclipse. They are added during the
+ * validation if they have not been defined by the element itself and they take
+ * precedence over the default values.
+ * </p>
+ * <p>
+ * Tables with allowed and default values of the descendants are built once when their
+ * class is loaded and cannot be modified later, so that elements of independent tasks
+ * can be created and validated concurrently. An element itself is not synchronized; it
+ * can be read by more threads only after it has been validated.
+ * </p>
  * 
  * @since Ant-Eclipse 1.0
  * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
  */
 public abstract class PreferencesElement {
 
-    private static final String VERSION_NAME = "eclipse.preferences.version";
+    static final String VERSION_NAME = "eclipse.preferences.version";
 
     private static final String VERSION_VALUE = "1";
 
@@ -46,6 +60,14 @@ public abstract class PreferencesElement {
 
     private Vector variables = new Vector();
 
+    private Hashtable variableIndex = new Hashtable();
+
+    private File profile = null;
+
+    private boolean profileApplied = false;
+
+    private boolean link = false;
+
     /**
      * Creates a new instance of the element for preferences under the settings element.
      * 
@@ -78,6 +100,7 @@ public abstract class PreferencesElement {
      */
     void internalSetName(String value) {
         settings.validatePreferencesName(value);
+        settings.indexPreferences(this, name, value);
         name = value;
     }
 
@@ -106,6 +129,72 @@ public abstract class PreferencesElement {
         internalCreateVariable(VERSION_NAME, value);
     }
 
+    /**
+     * Returns the file with a profile exported by Eclipse to read the variables from or
+     * <tt>null</tt> if there is none.
+     * 
+     * @return The file with the profile or <tt>null</tt> if not having been set.
+     */
+    public File getProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets the file with a profile exported by Eclipse to read the variables from. Both
+     * XML profiles (the formatter, the code clean-up, ...) and properties files
+     * (exported preferences or preference files) are accepted. Variables defined by this
+     * element are not overridden.
+     * 
+     * @param file
+     *        The file with the profile.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setProfile(File file) {
+        profile = file;
+        profileApplied = false;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the file with preferences should be hard-linked to a
+     * shared copy in the directory given by the attribute <tt>storedir</tt> of the
+     * settings element (<tt>false</tt> is used as a default, writing the file).
+     * 
+     * @return <tt>True</tt> if the file should be linked to a shared copy.
+     */
+    public boolean getLink() {
+        return link;
+    }
+
+    /**
+     * Sets if the file with preferences should be hard-linked to a shared copy in the
+     * directory given by the attribute <tt>storedir</tt> of the settings element.
+     * Eclipse rewrites preference files in place when they are changed in the IDE; a
+     * change of a linked file is seen by all projects sharing the copy. Links should be
+     * used only for preferences which are not edited in Eclipse.
+     * 
+     * @param value
+     *        <tt>True</tt> if the file should be linked to a shared copy.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setLink(boolean value) {
+        link = value;
+    }
+
+    /**
+     * Adds the variables from the profile which have not been defined yet. It is
+     * expected to be called at the beginning of the validation, before the default
+     * values are added. The profile is applied only once; the validation of the
+     * descendants calls it before the validation of this class.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    void applyProfile() {
+        if (profile == null || profileApplied)
+            return;
+        profileApplied = true;
+        PreferencesProfile.getInstance(profile).addVariables(this);
+    }
+
     /**
      * Returns a list with instances of the class VariableElement defining variables for a
      * file <em>&lt;full qualified class
@@ -170,6 +259,7 @@ public abstract class PreferencesElement {
      * @since Ant-Eclipse 1.0
      */
     public void validate() {
+        applyProfile();
         if (!hasVariable(VERSION_NAME))
             setVersion(VERSION_VALUE);
         for (int i = 0, size = variables.size(); i != size; ++i) {
@@ -196,6 +286,23 @@ public abstract class PreferencesElement {
                                     + "\" has alredy been defined.");
     }
 
+    /**
+     * Updates the index of variables when a variable gets a new name.
+     * 
+     * @param variable
+     *        The variable which is being named.
+     * @param oldName
+     *        The previous name of the variable or <tt>null</tt> if it has not been set.
+     * @param newName
+     *        The new name of the variable.
+     * @since Ant-Eclipse 1.0
+     */
+    void indexVariable(VariableElement variable, String oldName, String newName) {
+        if (oldName != null && variableIndex.get(oldName) == variable)
+            variableIndex.remove(oldName);
+        variableIndex.put(newName, variable);
+    }
+
     /**
      * Checks if the variable with the specified name has already been defined for this
      * preferences.
@@ -221,12 +328,7 @@ public abstract class PreferencesElement {
      * @since Ant-Eclipse 1.0
      */
     VariableElement getVariable(String name) {
-        for (int i = 0, size = variables.size(); i != size; ++i) {
-            VariableElement variable = (VariableElement) variables.get(i);
-            if (name.equals(variable.getName()))
-                return variable;
-        }
-        return null;
+        return (VariableElement) variableIndex.get(name);
     }
 
     /**
@@ -0,0 +1,230 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Hashtable;
+import java.util.Properties;
+import java.util.Vector;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.apache.tools.ant.BuildException;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads preference variables from a profile exported by Eclipse. Two formats are
+ * recognized by the first character of the file:
+ * <ul>
+ * <li>XML profiles of the formatter, the code clean-up and other tools with elements
+ * <tt>setting</tt> with attributes <tt>id</tt> and <tt>value</tt>; only the first
+ * element <tt>profile</tt> is read,</li>
+ * <li>properties files like exported preferences (<tt>.epf</tt>) or preference files
+ * from the directory <tt>.settings</tt>. Exported preferences are recognized by the
+ * variable <tt>file_export_version</tt> or by names qualified by the scope and the
+ * package like <tt>/instance/org.eclipse.jdt.core/name</tt>; only the names qualified
+ * by the instance scope and the package of the preferences are accepted from them.
+ * All names from other files are accepted.</li>
+ * </ul>
+ * <p>
+ * Profiles are parsed once and cached by their path as long as their time of the last
+ * modification and length do not change, so that a profile shared by more modules is
+ * read only once. The cache can be used by more threads concurrently.
+ * </p>
+ * 
+ * @see PreferencesElement#setProfile(File)
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class PreferencesProfile {
+
+    /**
+     * Collects the settings of the first profile in an XML file.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    private static class Handler extends DefaultHandler {
+
+        Vector names = new Vector();
+        Vector values = new Vector();
+        int profiles;
+
+        public void startElement(String uri, String localName, String name,
+                Attributes attributes) {
+            if ("profile".equals(name))
+                ++profiles;
+            else if ("setting".equals(name) && profiles < 2) {
+                String id = attributes.getValue("id");
+                String value = attributes.getValue("value");
+                if (id != null && value != null) {
+                    names.addElement(id);
+                    values.addElement(value);
+                }
+            }
+        }
+
+    }
+
+    private static Hashtable profiles = new Hashtable();
+
+    private static SAXParserFactory factory = SAXParserFactory.newInstance();
+
+    private long lastModified;
+
+    private long length;
+
+    private boolean exported;
+
+    private String[] names;
+
+    private String[] values;
+
+    private PreferencesProfile() {
+    }
+
+    /**
+     * Returns the profile read from the specified file, parsing it only if it is not
+     * cached or if it has been modified.
+     * 
+     * @param file
+     *        The file with the profile.
+     * @return The profile read from the file.
+     * @throws BuildException
+     *         If the file cannot be read or parsed.
+     * @since Ant-Eclipse 1.0
+     */
+    static PreferencesProfile getInstance(File file) {
+        String path = file.getAbsolutePath();
+        // profiles are parsed under the lock, so that more threads waiting for the same
+        // one do not parse it more times
+        synchronized (profiles) {
+            PreferencesProfile result = (PreferencesProfile) profiles.get(path);
+            if (result != null && result.lastModified == file.lastModified()
+                    && result.length == file.length())
+                return result;
+            if (!file.isFile())
+                throw new BuildException("The profile \"" + path + "\" does not exist.");
+            result = new PreferencesProfile();
+            result.lastModified = file.lastModified();
+            result.length = file.length();
+            try {
+                result.parse(file);
+            } catch (IOException exception) {
+                throw new BuildException("Reading the profile \"" + path + "\" failed.",
+                        exception);
+            }
+            profiles.put(path, result);
+            return result;
+        }
+    }
+
+    /**
+     * Adds the variables of this profile which belong to the specified preferences and
+     * which have not been defined yet.
+     * 
+     * @param preferences
+     *        The element with the preferences to add the variables to.
+     * @since Ant-Eclipse 1.0
+     */
+    void addVariables(PreferencesElement preferences) {
+        String prefix = "/instance/" + preferences.getName() + '/';
+        for (int i = 0; i != names.length; ++i) {
+            String name = names[i];
+            // exported preferences contain names qualified by the scope and the package
+            if (exported) {
+                if (!name.startsWith(prefix))
+                    continue;
+                name = name.substring(prefix.length());
+            }
+            preferences.internalAddVariable(name, values[i]);
+        }
+    }
+
+    private void parse(File file) throws IOException {
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try {
+            input.mark(1);
+            int first = input.read();
+            while (first != -1 && Character.isWhitespace((char) first)) {
+                input.mark(1);
+                first = input.read();
+            }
+            input.reset();
+            if (first == '<')
+                parseXml(input, file);
+            else
+                parseProperties(input);
+        } finally {
+            input.close();
+        }
+    }
+
+    private void parseXml(InputStream input, File file) throws IOException {
+        Handler handler = new Handler();
+        try {
+            InputSource source = new InputSource(input);
+            source.setSystemId(file.toURI().toString());
+            factory.newSAXParser().parse(source, handler);
+        } catch (ParserConfigurationException exception) {
+            throw new BuildException("Creating the XML parser failed.", exception);
+        } catch (SAXException exception) {
+            throw new BuildException("Parsing the profile \"" + file.getAbsolutePath()
+                    + "\" failed.", exception);
+        }
+        names = (String[]) handler.names.toArray(new String[handler.names.size()]);
+        values = (String[]) handler.values.toArray(new String[handler.values.size()]);
+    }
+
+    private void parseProperties(InputStream input) throws IOException {
+        final Vector keys = new Vector();
+        // the properties are recorded in the order of their definition
+        Properties properties = new Properties() {
+
+            private static final long serialVersionUID = 1L;
+
+            public synchronized Object put(Object key, Object value) {
+                String name = (String) key;
+                // skip the comment-like entries of the export format
+                if (name.equals("file_export_version") || name.startsWith("/"))
+                    exported = true;
+                if (!name.equals("file_export_version") && !name.startsWith("@")
+                        && !name.equals("!/") && !containsKey(key))
+                    keys.addElement(key);
+                return super.put(key, value);
+            }
+
+        };
+        properties.load(input);
+        names = (String[]) keys.toArray(new String[keys.size()]);
+        values = new String[names.length];
+        for (int i = 0; i != names.length; ++i)
+            values[i] = properties.getProperty(names[i]);
+    }
+
+}
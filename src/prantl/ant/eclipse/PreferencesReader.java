@@ -0,0 +1,237 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Reads a preferences file entry by entry following the rules of the class
+ * java.util.Properties, but keeping the original lines, so that variables can be
+ * replaced in place and the other lines written back unchanged. An entry consists of a
+ * line and the lines continuing it after a backslash at its end. The name of the
+ * variable ends before the first equal sign, colon or white space which is not escaped
+ * and it is returned with the escape sequences resolved.
+ * 
+ * @see SettingsGenerator WorkspacePreferences
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class PreferencesReader {
+
+    private BufferedReader reader;
+
+    private String lines = null;
+
+    private String name = null;
+
+    /**
+     * Creates a new reader of the preferences in the specified stream encoded in UTF-8.
+     * 
+     * @param input
+     *        The stream with the content of the preferences file.
+     * @throws UnsupportedEncodingException
+     *         If the encoding UTF-8 is not supported.
+     * @since Ant-Eclipse 1.0
+     */
+    PreferencesReader(InputStream input) throws UnsupportedEncodingException {
+        reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+    }
+
+    /**
+     * Reads the next entry.
+     * 
+     * @return <tt>False</tt> if there are no more entries, otherwise <tt>true</tt>.
+     * @throws IOException
+     *         If there was an error reading the file.
+     * @since Ant-Eclipse 1.0
+     */
+    boolean next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            lines = name = null;
+            return false;
+        }
+        StringBuffer buffer = new StringBuffer(line);
+        // comments are not continued by a backslash at their end
+        if (!isComment(line))
+            while (isContinued(line) && (line = reader.readLine()) != null)
+                buffer.append('\n').append(line);
+        lines = buffer.toString();
+        name = getName(lines);
+        return true;
+    }
+
+    /**
+     * Returns the lines of the current entry separated by line feeds.
+     * 
+     * @return The original lines of the entry.
+     * @since Ant-Eclipse 1.0
+     */
+    String getLines() {
+        return lines;
+    }
+
+    /**
+     * Returns the unescaped name of the variable of the current entry or <tt>null</tt>
+     * if the entry is a comment or an empty line.
+     * 
+     * @return The name of the variable or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the unescaped value of the variable of the current entry or <tt>null</tt>
+     * if the entry is a comment or an empty line.
+     * 
+     * @return The value of the variable or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    String getValue() {
+        return name == null ? null : getValue(lines);
+    }
+
+    /**
+     * Closes the underlying stream.
+     * 
+     * @throws IOException
+     *         If there was an error closing the stream.
+     * @since Ant-Eclipse 1.0
+     */
+    void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Returns the unescaped name of the variable defined by an entry of a preferences
+     * file or <tt>null</tt> if the entry is a comment or an empty line.
+     * 
+     * @param lines
+     *        The lines of the entry separated by line feeds.
+     * @return The name of the variable or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    static String getName(String lines) {
+        int i = skipWhiteSpace(lines, 0);
+        if (i == lines.length() || isComment(lines))
+            return null;
+        StringBuffer result = new StringBuffer();
+        unescape(lines, i, true, result);
+        return result.toString();
+    }
+
+    /**
+     * Returns the unescaped value of the variable defined by an entry of a preferences
+     * file. The entry must not be a comment or an empty line.
+     * 
+     * @param lines
+     *        The lines of the entry separated by line feeds.
+     * @return The value of the variable.
+     * @since Ant-Eclipse 1.0
+     */
+    static String getValue(String lines) {
+        int length = lines.length();
+        int i = skipWhiteSpace(lines, unescape(lines, skipWhiteSpace(lines, 0), true,
+                new StringBuffer()));
+        if (i != length && (lines.charAt(i) == '=' || lines.charAt(i) == ':'))
+            i = skipWhiteSpace(lines, i + 1);
+        StringBuffer result = new StringBuffer();
+        unescape(lines, i, false, result);
+        return result.toString();
+    }
+
+    private static int unescape(String lines, int i, boolean name, StringBuffer result) {
+        int length = lines.length();
+        for (; i < length; ++i) {
+            char character = lines.charAt(i);
+            if (name && (character == '=' || character == ':' || isWhiteSpace(character)))
+                break;
+            if (character != '\\') {
+                result.append(character);
+                continue;
+            }
+            if (++i == length)
+                break;
+            character = lines.charAt(i);
+            if (character == '\n') {
+                // the white space at the beginning of a continuing line is skipped
+                i = skipWhiteSpace(lines, i + 1) - 1;
+                continue;
+            }
+            if (character == 'u' && i + 4 < length) {
+                try {
+                    result.append((char) Integer.parseInt(lines.substring(i + 1, i + 5),
+                            16));
+                    i += 4;
+                    continue;
+                } catch (NumberFormatException exception) {
+                }
+            }
+            result.append(unescape(character));
+        }
+        return i;
+    }
+
+    private static char unescape(char character) {
+        switch (character) {
+        case 't':
+            return '\t';
+        case 'n':
+            return '\n';
+        case 'r':
+            return '\r';
+        case 'f':
+            return '\f';
+        default:
+            return character;
+        }
+    }
+
+    private static boolean isComment(String line) {
+        int start = skipWhiteSpace(line, 0);
+        return start != line.length()
+                && (line.charAt(start) == '#' || line.charAt(start) == '!');
+    }
+
+    private static boolean isContinued(String line) {
+        int count = 0;
+        for (int i = line.length() - 1; i >= 0 && line.charAt(i) == '\\'; --i)
+            ++count;
+        return count % 2 != 0;
+    }
+
+    private static int skipWhiteSpace(String line, int start) {
+        int length = line.length();
+        while (start != length && isWhiteSpace(line.charAt(start)))
+            ++start;
+        return start;
+    }
+
+    private static boolean isWhiteSpace(char character) {
+        return character == ' ' || character == '\t' || character == '\f';
+    }
+
+}
@@ -19,19 +19,19 @@
 
 package prantl.ant.eclipse;
 
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
 
 /**
  * Provides the functionality generating the file <tt>.project</tt> for the supplied
- * task object. It is expected to be used within the class EclipseTask.
+ * task object. It is expected to be used within the class EclipseTask. The description
+ * of the project is resolved into an immutable object first, which is rendered by the
+ * class EclipseRenderer then.
  * 
  * @see EclipseTask
+ * @see EclipseRenderer
  * @since Ant-Eclipse 1.0
  * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
  */
@@ -68,63 +68,38 @@ final class ProjectGenerator {
             task.log("There was no description of a project found.", Project.MSG_WARN);
             return;
         }
+        String name = project.getName();
+        if (name == null)
+            name = task.getProject().getProperty("ant.project.name");
+        if (name == null)
+            throw new BuildException(
+                    "Both name of the Eclipse and name of the Ant project cannot be missing.");
+        int mode = task.getEclipse().getMode().getIndex();
+        ResolvedEclipseProject.Description description = new ResolvedEclipseProject.Description(
+                name, defaultBuidCommands[mode], defaultNatures[mode]);
+        task.setResolvedDescription(description);
         EclipseOutput output = task.getOutput();
-        if (output.isProjectUpToDate()) {
+        String fingerprint = new Fingerprint("project").add(
+                task.getEclipse().getMode().getValue()).add(name).getValue();
+        if (output.isProjectUpToDate(fingerprint)) {
             task.log("The project definition is up-to-date.", Project.MSG_WARN);
             return;
         }
         task.log("Writing the project definition in the mode \""
                 + task.getEclipse().getMode().getValue() + "\".");
-        XmlWriter writer = null;
-        try {
-            writer = new XmlWriter(new OutputStreamWriter(new BufferedOutputStream(output
-                    .createProject()), "UTF-8"));
-            writer.writeXmlDeclaration("UTF-8");
-            writer.openElement("projectDescription");
-            writer.openElement("name");
-            String name = project.getName();
-            if (name == null)
-                name = task.getProject().getProperty("ant.project.name");
-            if (name == null)
-                throw new BuildException(
-                        "Both name of the Eclipse and name of the Ant project cannot be missing.");
+        byte[] content = task.getCachedContent(fingerprint);
+        if (content == null) {
             task.log("Project name is \"" + name + "\".", Project.MSG_VERBOSE);
-            writer.writeText(name);
-            writer.closeElement("name");
-            writer.openElement("comment");
-            writer.closeElement("comment");
-            writer.openElement("projects");
-            writer.closeElement("projects");
-            writer.openElement("buildSpec");
-            writer.openElement("buildCommand");
-            writer.openElement("name");
-            int mode = task.getEclipse().getMode().getIndex();
-            writer.writeText(defaultBuidCommands[mode]);
-            writer.closeElement("name");
-            writer.openElement("arguments");
-            writer.closeElement("arguments");
-            writer.closeElement("buildCommand");
-            writer.closeElement("buildSpec");
-            writer.openElement("natures");
-            for (int i = 0, length = defaultNatures[mode].length; i != length; ++i) {
-                writer.openElement("nature");
-                writer.writeText(defaultNatures[mode][i]);
-                writer.closeElement("nature");
-            }
-            writer.closeElement("natures");
-            writer.closeElement("projectDescription");
-        } catch (UnsupportedEncodingException exception) {
-            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+            content = EclipseRenderer.renderProject(description);
+            task.cacheContent(fingerprint, content);
+        }
+        try {
+            int result = output.updateProject(content);
+            task.fileUpdated(".project", result);
+            task.log("The project definition was " + EclipseOutput.getResultName(result)
+                    + ".");
         } catch (IOException exception) {
             throw new BuildException("Writing the project definition failed.", exception);
-        } finally {
-            if (writer != null)
-                try {
-                    writer.close();
-                } catch (IOException exception1) {
-                    throw new BuildException("Closing the project definition failed.",
-                            exception1);
-                }
         }
     }
 
@@ -0,0 +1,403 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.Vector;
+
+/**
+ * Contains the resolved content of an Eclipse project: the description of the project,
+ * the entries of the classpath and the preferences, with all paths resolved, relativized
+ * and validated, ready to be rendered by the class EclipseRenderer. A part is
+ * <tt>null</tt> if it was not configured. Instances cannot be modified and they can be
+ * shared by more threads and outputs.
+ * <p>
+ * The model can be written into a compact binary form and read back, so that the files
+ * can be rendered again without resolving the Ant paths. Strings are written once and
+ * referred to by their index later.
+ * </p>
+ * <p>
+ * The entries of the classpath are kept in the compact store they were collected into
+ * by the class ClassPathGenerator.
+ * </p>
+ * 
+ * @see EclipseRenderer
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class ResolvedEclipseProject {
+
+    /**
+     * Contains the resolved description of the project written into the file
+     * <tt>.project</tt>.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static final class Description {
+
+        final String name;
+        final String buildCommand;
+        private final String[] natures;
+
+        Description(String name, String buildCommand, String[] natures) {
+            this.name = name;
+            this.buildCommand = buildCommand;
+            this.natures = (String[]) natures.clone();
+        }
+
+        int getNatureCount() {
+            return natures.length;
+        }
+
+        String getNature(int index) {
+            return natures[index];
+        }
+
+    }
+
+    /**
+     * Contains a resolved entry of the file <tt>.classpath</tt>. Fields of this class
+     * match attributes of the element <tt>classpathentry</tt>; the attributes
+     * <tt>excluding</tt> and <tt>output</tt> are used by sources only, the attributes
+     * <tt>exported</tt>, <tt>sourcepath</tt> and <tt>javadoc_location</tt> by
+     * binaries only.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static final class ClassPathEntry {
+
+        final String kind;
+        final String path;
+        final boolean exported;
+        final String sourcePath;
+        final String javadocLocation;
+        final String excluding;
+        final String output;
+
+        ClassPathEntry(String kind, String path, boolean exported, String sourcePath,
+                String javadocLocation, String excluding, String output) {
+            this.kind = kind;
+            this.path = path;
+            this.exported = exported;
+            this.sourcePath = sourcePath;
+            this.javadocLocation = javadocLocation;
+            this.excluding = excluding;
+            this.output = output;
+        }
+
+        ClassPathEntry(String kind, String path) {
+            this(kind, path, false, null, null, null, null);
+        }
+
+    }
+
+    /**
+     * Contains resolved preferences written into a file <tt>.settings/xxx.prefs</tt>
+     * with the variables in the order of output.
+     * 
+     * @since Ant-Eclipse 1.0
+     * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+     */
+    static final class Preferences {
+
+        final String name;
+        private final String[] names;
+        private final String[] values;
+
+        Preferences(String name, Vector variables) {
+            this.name = name;
+            names = new String[variables.size()];
+            values = new String[names.length];
+            for (int i = 0; i != names.length; ++i) {
+                VariableElement variable = (VariableElement) variables.get(i);
+                names[i] = variable.getName();
+                values[i] = variable.getValue();
+            }
+        }
+
+        private Preferences(String name, String[] names, String[] values) {
+            this.name = name;
+            this.names = names;
+            this.values = values;
+        }
+
+        int getVariableCount() {
+            return names.length;
+        }
+
+        String getVariableName(int index) {
+            return names[index];
+        }
+
+        String getVariableValue(int index) {
+            return values[index];
+        }
+
+    }
+
+    private static final int FORMAT = 0x41450002;
+
+    private final Description description;
+
+    private final ClassPathEntryStore entries;
+
+    private final Preferences[] preferences;
+
+    /**
+     * Creates a new instance from the resolved parts.
+     * 
+     * @param description
+     *        The description of the project or <tt>null</tt>.
+     * @param entries
+     *        The entries of the classpath in the order of output or <tt>null</tt>.
+     * @param preferences
+     *        The preferences in the order of output or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    ResolvedEclipseProject(Description description, ClassPathEntry[] entries,
+            Preferences[] preferences) {
+        this(description, entries == null ? null : new ClassPathEntryStore(entries,
+                new InternedPathPool()), preferences);
+    }
+
+    /**
+     * Creates a new instance from the resolved parts with the classpath entries in the
+     * specified store. The store must not be modified later.
+     * 
+     * @param description
+     *        The description of the project or <tt>null</tt>.
+     * @param entries
+     *        The store with the entries of the classpath in the order of output or
+     *        <tt>null</tt>.
+     * @param preferences
+     *        The preferences in the order of output or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    ResolvedEclipseProject(Description description, ClassPathEntryStore entries,
+            Preferences[] preferences) {
+        this.description = description;
+        this.entries = entries;
+        this.preferences = preferences == null ? null : (Preferences[]) preferences
+                .clone();
+    }
+
+    /**
+     * Returns the description of the project or <tt>null</tt> if there is none.
+     * 
+     * @return The description of the project or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    Description getDescription() {
+        return description;
+    }
+
+    /**
+     * Returns a new array with the entries of the classpath or <tt>null</tt> if there is
+     * no classpath.
+     * 
+     * @return A new array with the entries of the classpath or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    ClassPathEntry[] getClassPathEntries() {
+        return entries == null ? null : entries.toArray();
+    }
+
+    /**
+     * Returns a new array with the preferences or <tt>null</tt> if there are no
+     * settings.
+     * 
+     * @return A new array with the preferences or <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    Preferences[] getPreferences() {
+        return preferences == null ? null : (Preferences[]) preferences.clone();
+    }
+
+    /**
+     * Writes the model in the compact binary form into the specified stream. The stream
+     * is not closed.
+     * 
+     * @param stream
+     *        The stream to write into.
+     * @throws IOException
+     *         If there was an error writing into the stream.
+     * @since Ant-Eclipse 1.0
+     */
+    void write(OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        Hashtable pool = new Hashtable();
+        output.writeInt(FORMAT);
+        output.writeBoolean(description != null);
+        if (description != null) {
+            writeString(output, pool, description.name);
+            writeString(output, pool, description.buildCommand);
+            writeNumber(output, description.natures.length);
+            for (int i = 0; i != description.natures.length; ++i)
+                writeString(output, pool, description.natures[i]);
+        }
+        output.writeBoolean(entries != null);
+        if (entries != null) {
+            writeNumber(output, entries.size());
+            for (int i = 0, size = entries.size(); i != size; ++i) {
+                ClassPathEntry entry = entries.get(i);
+                writeString(output, pool, entry.kind);
+                writeString(output, pool, entry.path);
+                output.writeBoolean(entry.exported);
+                writeString(output, pool, entry.sourcePath);
+                writeString(output, pool, entry.javadocLocation);
+                writeString(output, pool, entry.excluding);
+                writeString(output, pool, entry.output);
+            }
+        }
+        output.writeBoolean(preferences != null);
+        if (preferences != null) {
+            writeNumber(output, preferences.length);
+            for (int i = 0; i != preferences.length; ++i) {
+                Preferences element = preferences[i];
+                writeString(output, pool, element.name);
+                writeNumber(output, element.names.length);
+                for (int j = 0; j != element.names.length; ++j) {
+                    writeString(output, pool, element.names[j]);
+                    writeString(output, pool, element.values[j]);
+                }
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads a model in the compact binary form from the specified stream. The stream is
+     * not closed.
+     * 
+     * @param stream
+     *        The stream to read from.
+     * @return The model read from the stream.
+     * @throws IOException
+     *         If there was an error reading from the stream or if the stream does not
+     *         contain a model.
+     * @since Ant-Eclipse 1.0
+     */
+    static ResolvedEclipseProject read(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        Vector pool = new Vector();
+        if (input.readInt() != FORMAT)
+            throw new IOException("The stream does not contain a resolved project.");
+        Description description = null;
+        if (input.readBoolean()) {
+            String name = readString(input, pool);
+            String buildCommand = readString(input, pool);
+            String[] natures = new String[readNumber(input)];
+            for (int i = 0; i != natures.length; ++i)
+                natures[i] = readString(input, pool);
+            description = new Description(name, buildCommand, natures);
+        }
+        ClassPathEntry[] entries = null;
+        if (input.readBoolean()) {
+            entries = new ClassPathEntry[readNumber(input)];
+            for (int i = 0; i != entries.length; ++i) {
+                String kind = readString(input, pool);
+                String path = readString(input, pool);
+                boolean exported = input.readBoolean();
+                String sourcePath = readString(input, pool);
+                String javadocLocation = readString(input, pool);
+                String excluding = readString(input, pool);
+                entries[i] = new ClassPathEntry(kind, path, exported, sourcePath,
+                        javadocLocation, excluding, readString(input, pool));
+            }
+        }
+        Preferences[] preferences = null;
+        if (input.readBoolean()) {
+            preferences = new Preferences[readNumber(input)];
+            for (int i = 0; i != preferences.length; ++i) {
+                String name = readString(input, pool);
+                String[] names = new String[readNumber(input)];
+                String[] values = new String[names.length];
+                for (int j = 0; j != names.length; ++j) {
+                    names[j] = readString(input, pool);
+                    values[j] = readString(input, pool);
+                }
+                preferences[i] = new Preferences(name, names, values);
+            }
+        }
+        return new ResolvedEclipseProject(description, entries, preferences);
+    }
+
+    // numbers are written in 7-bit groups, the highest bit marks a following group
+    private static void writeNumber(DataOutputStream output, int value)
+            throws IOException {
+        while ((value & ~0x7f) != 0) {
+            output.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readNumber(DataInputStream input) throws IOException {
+        int result = 0;
+        for (int shift = 0;; shift += 7) {
+            int value = input.readUnsignedByte();
+            result |= (value & 0x7f) << shift;
+            if ((value & 0x80) == 0)
+                return result;
+        }
+    }
+
+    // 0 stands for null, 1 for a new string followed by the number of its bytes in UTF-8
+    // and the bytes, a higher number refers to the string with the index decreased by two
+    private static void writeString(DataOutputStream output, Hashtable pool, String value)
+            throws IOException {
+        if (value == null) {
+            writeNumber(output, 0);
+            return;
+        }
+        Integer index = (Integer) pool.get(value);
+        if (index != null)
+            writeNumber(output, index.intValue() + 2);
+        else {
+            pool.put(value, new Integer(pool.size()));
+            writeNumber(output, 1);
+            byte[] bytes = value.getBytes("UTF-8");
+            writeNumber(output, bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream input, Vector pool)
+            throws IOException {
+        int index = readNumber(input);
+        if (index == 0)
+            return null;
+        if (index > 1)
+            return (String) pool.get(index - 2);
+        byte[] bytes = new byte[readNumber(input)];
+        input.readFully(bytes);
+        String value = new String(bytes, "UTF-8");
+        pool.addElement(value);
+        return value;
+    }
+
+}
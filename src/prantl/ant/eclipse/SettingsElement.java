@@ -19,6 +19,8 @@
 
 package prantl.ant.eclipse;
 
+import java.io.File;
+import java.util.Hashtable;
 import java.util.Vector;
 
 import org.apache.tools.ant.BuildException;
@@ -26,7 +28,8 @@ import org.apache.tools.ant.BuildException;
 /**
  * Configures components creating their preference files under under the directory
  * <tt>.settings</tt>. The attributes <tt>name</tt> of all elements for components
- * describing preferences must be distinct.
+ * describing preferences must be distinct. Preferences are kept in the order of their
+ * definition and indexed by their names.
  * 
  * @since Ant-Eclipse 1.0
  * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
@@ -35,6 +38,12 @@ public class SettingsElement {
 
     private Vector preferences = new Vector();
 
+    private Hashtable preferencesIndex = new Hashtable();
+
+    private File storeDir = null;
+
+    private boolean merge = false;
+
     /**
      * Creates a new instance of the settings element.
      * 
@@ -55,6 +64,57 @@ public class SettingsElement {
         return preferences;
     }
 
+    /**
+     * Returns the directory to keep shared copies of the preferences in or <tt>null</tt>
+     * if the preferences should not be shared.
+     * 
+     * @return The directory to keep shared copies of the preferences in or <tt>null</tt>
+     *         if not having been set.
+     */
+    public File getStoreDir() {
+        return storeDir;
+    }
+
+    /**
+     * Sets the directory to keep shared copies of the preferences in. Every distinct
+     * content of the preferences elements with the attribute <tt>link</tt> is written
+     * there once and hard-linked into the directory <tt>.settings</tt> of the project,
+     * or copied if the link cannot be created. A linked file must not be modified in
+     * place by other tools, including Eclipse.
+     * 
+     * @see PreferencesElement#setLink(boolean)
+     * 
+     * @param dir
+     *        A directory to keep shared copies of the preferences in.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setStoreDir(File dir) {
+        storeDir = dir;
+    }
+
+    /**
+     * Returns <tt>true</tt> if the declared variables should be merged into the existing
+     * preference files (<tt>false</tt> is used as a default, replacing the whole files).
+     * 
+     * @return <tt>True</tt> if the existing files should be merged.
+     */
+    public boolean getMerge() {
+        return merge;
+    }
+
+    /**
+     * Sets if the declared variables should be merged into the existing preference
+     * files. Values of the declared variables are replaced in place, new ones are
+     * appended and other variables and comments are kept. No time stamp is written.
+     * 
+     * @param value
+     *        <tt>True</tt> if the existing files should be merged.
+     * @since Ant-Eclipse 1.0
+     */
+    public void setMerge(boolean value) {
+        merge = value;
+    }
+
     /**
      * Adds a definition of the general preferences element.
      * 
@@ -132,6 +192,24 @@ public class SettingsElement {
                     + "\" has alredy been defined.");
     }
 
+    /**
+     * Updates the index of preferences when preferences get a new name.
+     * 
+     * @param element
+     *        The preferences which are being named.
+     * @param oldName
+     *        The previous name of the preferences or <tt>null</tt> if it has not been
+     *        set.
+     * @param newName
+     *        The new name of the preferences.
+     * @since Ant-Eclipse 1.0
+     */
+    void indexPreferences(PreferencesElement element, String oldName, String newName) {
+        if (oldName != null && preferencesIndex.get(oldName) == element)
+            preferencesIndex.remove(oldName);
+        preferencesIndex.put(newName, element);
+    }
+
     /**
      * Checks if the preferences with the specified name has already been defined for this
      * preferences.
@@ -157,12 +235,7 @@ public class SettingsElement {
      * @since Ant-Eclipse 1.0
      */
     PreferencesElement getPreferences(String name) {
-        for (int i = 0, size = preferences.size(); i != size; ++i) {
-            PreferencesElement preference = (PreferencesElement) preferences.get(i);
-            if (name.equals(preference.getName()))
-                return preference;
-        }
-        return null;
+        return (PreferencesElement) preferencesIndex.get(name);
     }
 
 }
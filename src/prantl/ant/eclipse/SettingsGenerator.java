@@ -19,10 +19,16 @@
 
 package prantl.ant.eclipse;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Vector;
 
 import org.apache.tools.ant.BuildException;
@@ -31,7 +37,21 @@ import org.apache.tools.ant.Project;
 /**
  * Provides the functionality generating the file
  * <tt>.settings/org.eclipse.core.resources.prefs</tt> for the supplied task object. It
- * is expected to be used within the class EclipseTask.
+ * is expected to be used within the class EclipseTask. The preferences are resolved into
+ * immutable objects of the class ResolvedEclipseProject first, which are rendered by the
+ * class EclipseRenderer then.
+ * <p>
+ * A file starts with a comment containing the current time, followed by the variables
+ * in the order of their definition. In the reproducible mode the time is omitted and
+ * the variables are sorted by their names, so that the same inputs produce the same
+ * file.
+ * </p>
+ * <p>
+ * In the merge mode the existing file is read and only the declared variables are
+ * applied to it: their values are replaced in place and the missing ones are appended
+ * in the order of output. Other lines are kept and no time stamp is written, so that
+ * the file is not written at all if no declared value changed.
+ * </p>
  * 
  * @see EclipseTask
  * @since Ant-Eclipse 1.0
@@ -64,8 +84,7 @@ final class SettingsGenerator {
             task.log("There were no settings found.", Project.MSG_WARN);
             return;
         }
-        checkPreferences(settings);
-        Vector entries = settings.getPreferences();
+        Vector entries = checkPreferences(settings);
         if (entries.size() == 0) {
             task.log("There were no preferences found.", Project.MSG_WARN);
             return;
@@ -87,111 +106,202 @@ final class SettingsGenerator {
     private void generatePreferences(PreferencesElement preferences) {
         EclipseOutput output = task.getOutput();
         String packageName = preferences.getName();
-        if (output.isPreferencesUpToDate(packageName)) {
+        boolean reproducible = task.getEclipse().isReproducible();
+        boolean merge = task.getEclipse().getSettings().getMerge();
+        boolean link = preferences.getLink();
+        File store = task.getEclipse().getSettings().getStoreDir();
+        if (link && store == null)
+            throw new BuildException("The attribute \"link\" of the preferences for \""
+                    + packageName + "\" needs the attribute \"storedir\" of the element "
+                    + "<settings>.");
+        Vector entries = removeHoistedVariables(packageName, preferences.getVariables());
+        if (reproducible)
+            entries = sortVariables(entries);
+        ResolvedEclipseProject.Preferences resolved = new ResolvedEclipseProject.Preferences(
+                packageName, entries);
+        task.addResolvedPreferences(resolved);
+        Fingerprint fingerprint = new Fingerprint("preferences").add(
+                task.getEclipse().getMode().getValue()).add(reproducible).add(merge)
+                .add(packageName);
+        // switching the links or moving the store has to replace the existing file
+        fingerprint.add(link).add(link ? store.getAbsolutePath() : null);
+        for (int i = 0, count = resolved.getVariableCount(); i != count; ++i)
+            fingerprint.add(resolved.getVariableName(i)).add(
+                    resolved.getVariableValue(i));
+        if (output.isPreferencesUpToDate(packageName, fingerprint.getValue())) {
             task.log("The preferences for \"" + packageName + "\" are up-to-date.",
                     Project.MSG_WARN);
             return;
         }
         task.log("Writing the preferences for \"" + packageName + "\".");
-        OutputStreamWriter writer = null;
+        if (entries.size() == 0)
+            task.log("There were no variables found for \"" + packageName + "\".",
+                    Project.MSG_WARN);
+        byte[] content;
+        // the merged content depends on the existing file, it cannot be cached
+        if (merge)
+            content = merge(preferences, resolved);
+        else {
+            content = task.getCachedContent(fingerprint.getValue());
+            if (content == null) {
+                content = EclipseRenderer.renderPreferences(resolved, !reproducible);
+                task.cacheContent(fingerprint.getValue(), content);
+            }
+        }
         try {
-            writer = new OutputStreamWriter(output.createPreferences(packageName),
-                    "UTF-8");
-            generateTimeStamp(writer);
-            Vector entries = preferences.getVariables();
-            if (entries.size() == 0)
-                task.log("There were no variables found for \"" + packageName + "\".",
-                        Project.MSG_WARN);
-            for (int i = 0, size = entries.size(); i != size; ++i)
-                generateVariable(writer, (VariableElement) entries.get(i));
-        } catch (UnsupportedEncodingException exception) {
-            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+            int result = link ? output.updateSharedPreferences(
+                    packageName, content, store) : output.updatePreferences(packageName,
+                    content);
+            task.fileUpdated(".settings/" + packageName + ".prefs", result);
+            task.log("The preferences for \"" + packageName + "\" were "
+                    + EclipseOutput.getResultName(result) + ".");
         } catch (IOException exception) {
             throw new BuildException("Writing the settings failed.", exception);
-        } finally {
-            if (writer != null)
+        }
+    }
+
+    /**
+     * Merges the variables into the content of the existing file
+     * <tt>.settings/xxx.prefs</tt>. Entries are read by the rules of the class
+     * java.util.Properties and matched with the variables through the index of the
+     * preferences element.
+     * 
+     * @param preferences
+     *        The element with the definition of preferences for output.
+     * @param resolved
+     *        The resolved preferences with the variables in the order of output.
+     * @return The merged content of the file.
+     * @since Ant-Eclipse 1.0
+     */
+    private byte[] merge(PreferencesElement preferences,
+            ResolvedEclipseProject.Preferences resolved) {
+        String packageName = preferences.getName();
+        Map hoisted = getHoistedVariables(packageName);
+        HashSet written = new HashSet();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            OutputStreamWriter writer = new OutputStreamWriter(buffer, "UTF-8");
+            InputStream input = task.getOutput().openPreferences(packageName);
+            if (input != null) {
+                PreferencesReader reader = new PreferencesReader(input);
                 try {
-                    writer.close();
-                } catch (IOException exception1) {
-                    throw new BuildException("Closing the settings failed.", exception1);
+                    while (reader.next()) {
+                        String name = reader.getName();
+                        VariableElement variable = name == null ? null : preferences
+                                .getVariable(name);
+                        if (variable == null) {
+                            writer.write(reader.getLines());
+                            writer.write('\n');
+                        } else if ((hoisted == null || !hoisted.containsKey(name))
+                                && written.add(name))
+                            EclipseRenderer.writeVariable(writer, name, variable
+                                    .getValue());
+                    }
+                } finally {
+                    reader.close();
                 }
+            }
+            for (int i = 0, count = resolved.getVariableCount(); i != count; ++i) {
+                String name = resolved.getVariableName(i);
+                if (!written.contains(name))
+                    EclipseRenderer.writeVariable(writer, name, resolved
+                            .getVariableValue(i));
+            }
+            writer.close();
+        } catch (UnsupportedEncodingException exception) {
+            throw new BuildException("Encoder to UTF-8 is not supported.", exception);
+        } catch (IOException exception) {
+            throw new BuildException("Merging the settings failed.", exception);
         }
+        return buffer.toByteArray();
     }
 
     /**
-     * Writes a single comment line with the current time.
+     * Returns the variables of the specified package written into the preferences of the
+     * workspace or <tt>null</tt> if there are none.
      * 
-     * @param writer
-     *        The output stream to write into.
-     * @throws IOException
-     * @throws IOException
-     *         It an error during the output occurs.
+     * @param packageName
+     *        The name of the package the preferences belong to.
+     * @return The map of the names of the hoisted variables to their values or
+     *         <tt>null</tt>.
      * @since Ant-Eclipse 1.0
      */
-    private void generateTimeStamp(OutputStreamWriter writer) throws IOException {
-        writer.write('#');
-        writer.write(Calendar.getInstance().getTime().toString());
-        writer.write('\n');
+    private Map getHoistedVariables(String packageName) {
+        WorkspacePreferences workspace = task.getHoistedPreferences();
+        return workspace == null ? null : workspace.getVariables(packageName);
     }
 
     /**
-     * Writes a single variable into a settings file.
+     * Returns the variables without the ones written into the preferences of the
+     * workspace.
      * 
-     * @param writer
-     *        The output stream to write into.
-     * @param variable
-     *        The variable to write out.
-     * @throws IOException
-     *         It an error during the output occurs.
+     * @param packageName
+     *        The name of the package the preferences belong to.
+     * @param variables
+     *        The list of variables to filter.
+     * @return The same list if no variable was hoisted, otherwise a new list.
      * @since Ant-Eclipse 1.0
      */
-    private void generateVariable(OutputStreamWriter writer, VariableElement variable)
-            throws IOException {
-        writer.write(variable.getName());
-        writer.write('=');
-        writer.write(variable.getValue());
-        writer.write('\n');
+    private Vector removeHoistedVariables(String packageName, Vector variables) {
+        Map hoisted = getHoistedVariables(packageName);
+        if (hoisted == null)
+            return variables;
+        Vector result = new Vector(variables.size());
+        for (int i = 0, size = variables.size(); i != size; ++i) {
+            VariableElement variable = (VariableElement) variables.get(i);
+            if (!hoisted.containsKey(variable.getName()))
+                result.addElement(variable);
+        }
+        return result;
     }
 
     /**
-     * Checks if an element is missing that should be generated by default and generates
-     * it if so.
+     * Returns a new list with the variables sorted by their names, which is the order
+     * Eclipse itself writes preferences in.
      * 
-     * @param settings
-     *        The element containing definitions of preferences.
+     * @param variables
+     *        The list of variables to sort.
+     * @return A new list with the variables sorted by their names.
      * @since Ant-Eclipse 1.0
      */
-    private void checkPreferences(SettingsElement settings) {
-        if (task.getEclipse().getMode().getIndex() == EclipseElement.Mode.ASPECTJ
-                && getPreferences(settings, "org.eclipse.ajdt.ui") == null) {
-            GeneralPreferencesElement preferences = settings.createGeneral();
-            preferences.setName("org.eclipse.ajdt.ui");
-            // VariableElement variable = preferences.createVariable();
-            // variable.setName("org.eclipse.ajdt.ui.activeBuildConfiguration");
-            // variable.setValue("trace.ajproperties");
-        }
+    private Vector sortVariables(Vector variables) {
+        Vector result = new Vector(variables);
+        Collections.sort(result, new Comparator() {
+
+            public int compare(Object first, Object second) {
+                return ((VariableElement) first).getName().compareTo(
+                        ((VariableElement) second).getName());
+            }
+
+        });
+        return result;
     }
 
     /**
-     * Returns an element with the definition of preferences or <tt>null</tt> if there
-     * is none with the specified name.
+     * Returns a list of the preferences to generate, extended by the elements which are
+     * missing and should be generated by default. The settings element is not modified,
+     * so that it can be shared by more tasks.
      * 
      * @param settings
      *        The element containing definitions of preferences.
-     * @param name
-     *        The name of the preferences to get.
-     * @return The an element with the definition of preferences or <tt>null</tt> if
-     *         there is none with the specified name.
+     * @return A new list of the preferences to generate.
      * @since Ant-Eclipse 1.0
      */
-    private PreferencesElement getPreferences(SettingsElement settings, String name) {
-        Vector entries = settings.getPreferences();
-        for (int i = 0, size = entries.size(); i != size; ++i) {
-            PreferencesElement preferences = (PreferencesElement) entries.get(i);
-            if (name.equals(preferences.getName()))
-                return preferences;
+    private Vector checkPreferences(SettingsElement settings) {
+        Vector entries = new Vector(settings.getPreferences());
+        if (task.getEclipse().getMode().getIndex() == EclipseElement.Mode.ASPECTJ
+                && !settings.hasPreferences("org.eclipse.ajdt.ui")) {
+            // the default element belongs to its own settings not to be indexed in the
+            // shared ones
+            GeneralPreferencesElement preferences = new GeneralPreferencesElement(
+                    new SettingsElement());
+            preferences.setName("org.eclipse.ajdt.ui");
+            // VariableElement variable = preferences.createVariable();
+            // variable.setName("org.eclipse.ajdt.ui.activeBuildConfiguration");
+            // variable.setValue("trace.ajproperties");
+            entries.addElement(preferences);
         }
-        return null;
+        return entries;
     }
 
 }
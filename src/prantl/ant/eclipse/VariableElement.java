@@ -79,6 +79,7 @@ public class VariableElement {
      */
     public void setName(String name) {
         preferences.validateVariableName(name);
+        preferences.indexVariable(this, this.name, name);
         this.name = name;
     }
 
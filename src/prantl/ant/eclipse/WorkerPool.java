@@ -0,0 +1,106 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Runs a list of independent jobs on a bounded number of threads. Jobs are started in
+ * the order of the list; the caller is expected to collect their results from the job
+ * objects in the same order after all of them have finished.
+ * 
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class WorkerPool {
+
+    private Runnable[] jobs;
+
+    private Throwable[] failures;
+
+    private int next = 0;
+
+    private WorkerPool(Runnable[] jobs) {
+        this.jobs = jobs;
+        failures = new Throwable[jobs.length];
+    }
+
+    /**
+     * Runs the jobs using at most the specified number of threads and waits until all of
+     * them finish. If the number of threads is one or less the jobs are run in the
+     * current thread. If some jobs fail, the failure of the first of them in the list is
+     * rethrown; an error or a checked exception is wrapped in a BuildException.
+     * 
+     * @param jobs
+     *        The jobs to run.
+     * @param threadCount
+     *        The maximum number of threads to use.
+     * @throws BuildException
+     *         If a job failed or the waiting for the jobs was interrupted.
+     * @since Ant-Eclipse 1.0
+     */
+    static void run(Runnable[] jobs, int threadCount) {
+        final WorkerPool pool = new WorkerPool(jobs);
+        if (threadCount <= 1 || jobs.length <= 1)
+            pool.work();
+        else {
+            Thread[] threads = new Thread[Math.min(threadCount, jobs.length)];
+            for (int i = 0; i != threads.length; ++i) {
+                threads[i] = new Thread(new Runnable() {
+
+                    public void run() {
+                        pool.work();
+                    }
+
+                }, "ant-eclipse-worker-" + i);
+                threads[i].start();
+            }
+            try {
+                for (int i = 0; i != threads.length; ++i)
+                    threads[i].join();
+            } catch (InterruptedException exception) {
+                throw new BuildException("Waiting for the worker threads was interrupted.",
+                        exception);
+            }
+        }
+        for (int i = 0; i != jobs.length; ++i) {
+            Throwable failure = pool.failures[i];
+            if (failure instanceof RuntimeException)
+                throw (RuntimeException) failure;
+            if (failure != null)
+                throw new BuildException("A job failed: " + failure, failure);
+        }
+    }
+
+    private void work() {
+        for (int index; (index = getNextIndex()) >= 0;)
+            try {
+                jobs[index].run();
+            } catch (Throwable exception) {
+                // an error would end the thread silently and leave the job unfinished
+                failures[index] = exception;
+            }
+    }
+
+    private synchronized int getNextIndex() {
+        return next == jobs.length ? -1 : next++;
+    }
+
+}
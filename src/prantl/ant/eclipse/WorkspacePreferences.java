@@ -0,0 +1,307 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Vector;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Finds the preference variables which have the same value in all projects of a
+ * workspace and writes them into the preferences of the workspace (the instance scope of
+ * Eclipse), so that the projects need to keep only the variables which differ. Variables
+ * found in a project take precedence over the ones found in the workspace in Eclipse.
+ * <p>
+ * A variable is hoisted only if every project defines it with the same value; a
+ * project without it would get the value from the workspace instead of the Eclipse
+ * default otherwise. The version of the preferences is never hoisted. Other variables
+ * in the existing preferences of the workspace are preserved; they are read by the rules
+ * of the class java.util.Properties.
+ * </p>
+ * <p>
+ * The names of the hoisted variables are listed in the variable
+ * <tt>ant-eclipse.hoisted</tt> separated by commas. Variables listed there which are not
+ * hoisted any more are removed by the next run, also from the packages without any
+ * hoisted variables left.
+ * </p>
+ * 
+ * @see EclipseWorkspaceTask
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+final class WorkspacePreferences {
+
+    private static final String SETTINGS_DIRECTORY = ".metadata/.plugins/org.eclipse.core.runtime/.settings";
+
+    private static final String HOISTED_NAME = "ant-eclipse.hoisted";
+
+    private Hashtable preferences = new Hashtable();
+
+    /**
+     * Creates a new instance with the variables common to all specified settings. The
+     * settings are validated.
+     * 
+     * @param settings
+     *        The list of the settings of all projects; an item is <tt>null</tt> for a
+     *        project without settings.
+     * @since Ant-Eclipse 1.0
+     */
+    WorkspacePreferences(Vector settings) {
+        for (int i = 0, size = settings.size(); i != size; ++i) {
+            SettingsElement element = (SettingsElement) settings.get(i);
+            if (element == null) {
+                preferences.clear();
+                return;
+            }
+            if (i == 0)
+                collectVariables(element);
+            else
+                retainVariables(element);
+        }
+        for (Enumeration names = new Vector(preferences.keySet()).elements(); names
+                .hasMoreElements();) {
+            Object name = names.nextElement();
+            if (((Map) preferences.get(name)).size() == 0)
+                preferences.remove(name);
+        }
+    }
+
+    /**
+     * Returns the names of the packages with hoisted variables.
+     * 
+     * @return A new sorted array with the names of the packages.
+     * @since Ant-Eclipse 1.0
+     */
+    String[] getPackageNames() {
+        String[] result = (String[]) preferences.keySet().toArray(new String[0]);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the names of the packages with hoisted variables together with the names
+     * of the packages in the preferences of the specified workspace which contain
+     * variables hoisted by an earlier run.
+     * 
+     * @param workspaceDir
+     *        The directory of the workspace.
+     * @return A new sorted array with the names of the packages to write.
+     * @throws IOException
+     *         If there was an error reading a file.
+     * @since Ant-Eclipse 1.0
+     */
+    String[] getPackageNames(File workspaceDir) throws IOException {
+        HashSet result = new HashSet(preferences.keySet());
+        File[] files = new File(workspaceDir, SETTINGS_DIRECTORY).listFiles();
+        for (int i = 0; files != null && i != files.length; ++i) {
+            String name = files[i].getName();
+            if (name.endsWith(".prefs") && files[i].isFile()
+                    && readHoistedNames(files[i]) != null)
+                result.add(name.substring(0, name.length() - 6));
+        }
+        String[] names = (String[]) result.toArray(new String[0]);
+        Arrays.sort(names);
+        return names;
+    }
+
+    /**
+     * Returns the hoisted variables of the specified package or <tt>null</tt> if there
+     * are none.
+     * 
+     * @param packageName
+     *        The name of the package.
+     * @return The map of the names of the hoisted variables to their values or
+     *         <tt>null</tt>.
+     * @since Ant-Eclipse 1.0
+     */
+    Map getVariables(String packageName) {
+        return (Map) preferences.get(packageName);
+    }
+
+    /**
+     * Writes the hoisted variables of the specified package into the preferences of the
+     * workspace, if they differ from the current ones. Variables hoisted by an earlier
+     * run which are not hoisted any more are removed.
+     * 
+     * @param workspaceDir
+     *        The directory of the workspace.
+     * @param packageName
+     *        The name of the package.
+     * @return One of the values <tt>CREATED</tt>, <tt>CHANGED</tt> or
+     *         <tt>UNCHANGED</tt> of the class EclipseOutput.
+     * @throws IOException
+     *         If there was an error reading or writing the file.
+     * @since Ant-Eclipse 1.0
+     */
+    int write(File workspaceDir, String packageName) throws IOException {
+        File file = new File(new File(workspaceDir, SETTINGS_DIRECTORY), packageName
+                + ".prefs");
+        Map variables = getVariables(packageName);
+        if (variables == null)
+            variables = new Hashtable();
+        boolean exists = file.isFile();
+        HashSet stale = new HashSet();
+        if (exists) {
+            String[] hoisted = readHoistedNames(file);
+            if (hoisted != null)
+                stale.addAll(Arrays.asList(hoisted));
+        }
+        stale.removeAll(variables.keySet());
+        HashSet written = new HashSet();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(buffer, "UTF-8");
+        if (exists) {
+            PreferencesReader reader = new PreferencesReader(new FileInputStream(file));
+            try {
+                while (reader.next()) {
+                    String name = reader.getName();
+                    if (HOISTED_NAME.equals(name) || stale.contains(name))
+                        continue;
+                    if (name != null && variables.containsKey(name)) {
+                        // a variable defined more than once is replaced only once
+                        if (!written.add(name))
+                            continue;
+                        EclipseRenderer.writeVariable(writer, name, (String) variables
+                                .get(name));
+                    } else {
+                        writer.write(reader.getLines());
+                        writer.write('\n');
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        String[] names = (String[]) variables.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        StringBuffer hoisted = new StringBuffer();
+        for (int i = 0; i != names.length; ++i) {
+            if (!written.contains(names[i]))
+                EclipseRenderer.writeVariable(writer, names[i], (String) variables
+                        .get(names[i]));
+            if (i != 0)
+                hoisted.append(',');
+            hoisted.append(names[i]);
+        }
+        if (names.length != 0)
+            EclipseRenderer.writeVariable(writer, HOISTED_NAME, hoisted.toString());
+        writer.close();
+        byte[] content = buffer.toByteArray();
+        if (!exists)
+            writeFile(file, content);
+        else if (!Arrays.equals(content, readFile(file)))
+            writeFile(file, content);
+        else
+            return EclipseOutput.UNCHANGED;
+        return exists ? EclipseOutput.CHANGED : EclipseOutput.CREATED;
+    }
+
+    private void collectVariables(SettingsElement settings) {
+        Vector entries = settings.getPreferences();
+        for (int i = 0, size = entries.size(); i != size; ++i) {
+            PreferencesElement element = (PreferencesElement) entries.get(i);
+            element.validate();
+            Hashtable values = new Hashtable();
+            Vector variables = element.getVariables();
+            for (int j = 0, count = variables.size(); j != count; ++j) {
+                VariableElement variable = (VariableElement) variables.get(j);
+                if (!PreferencesElement.VERSION_NAME.equals(variable.getName()))
+                    values.put(variable.getName(), variable.getValue());
+            }
+            preferences.put(element.getName(), values);
+        }
+    }
+
+    private void retainVariables(SettingsElement settings) {
+        for (Enumeration names = new Vector(preferences.keySet()).elements(); names
+                .hasMoreElements();) {
+            String name = (String) names.nextElement();
+            PreferencesElement element = settings.getPreferences(name);
+            if (element == null) {
+                preferences.remove(name);
+                continue;
+            }
+            element.validate();
+            Map values = (Map) preferences.get(name);
+            for (Enumeration variables = new Vector(values.keySet()).elements(); variables
+                    .hasMoreElements();) {
+                Object variableName = variables.nextElement();
+                VariableElement variable = element.getVariable((String) variableName);
+                if (variable == null || !values.get(variableName).equals(variable.getValue()))
+                    values.remove(variableName);
+            }
+        }
+    }
+
+    private static String[] readHoistedNames(File file) throws IOException {
+        PreferencesReader reader = new PreferencesReader(new FileInputStream(file));
+        try {
+            while (reader.next())
+                if (HOISTED_NAME.equals(reader.getName())) {
+                    String value = reader.getValue();
+                    return value.length() == 0 ? new String[0] : value.split(",");
+                }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    static byte[] readFile(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            byte[] result = new byte[(int) file.length()];
+            int offset = 0;
+            for (int length; offset != result.length
+                    && (length = input.read(result, offset, result.length - offset)) != -1;)
+                offset += length;
+            return result;
+        } finally {
+            input.close();
+        }
+    }
+
+    static void writeFile(File file, byte[] content) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+            throw new BuildException("The directory \"" + directory.getAbsolutePath()
+                    + "\" could not be created.");
+        FileEclipseOutput.ReplacingOutputStream output = new FileEclipseOutput.ReplacingOutputStream(
+                File.createTempFile(file.getName(), ".tmp", directory), file);
+        try {
+            output.write(ByteBuffer.wrap(content));
+        } finally {
+            output.close();
+        }
+    }
+
+}
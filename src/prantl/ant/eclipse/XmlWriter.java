@@ -23,13 +23,19 @@ import java.io.IOException;
 import java.io.Writer;
 
 /**
- * Simplifies writing XML output.
+ * Simplifies writing XML output. The output is canonical: elements and attributes are
+ * written exactly in the order of the calls, lines are separated by <tt>\n</tt>
+ * regardless of the platform and nested elements are indented by two spaces. The same
+ * sequence of calls always produces the same characters.
  * 
  * @since Ant-Eclipse 1.0
  * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
  */
 class XmlWriter {
 
+    private static final char[] INDENTATION = "                                "
+            .toCharArray();
+
     private Writer writer;
 
     private int nestedLevel = 0;
@@ -136,7 +142,7 @@ class XmlWriter {
         writer.write(' ');
         writer.write(name);
         writer.write("=\"");
-        writer.write(escapeAttributeValue(value));
+        writeEscaped(value, true);
         writer.write('\"');
     }
 
@@ -203,84 +209,65 @@ class XmlWriter {
      *         If there was an error writing into the underlying writer.
      */
     void writeText(String text) throws IOException {
-        writer.write(escapeCharacterData(text));
+        writeEscaped(text, false);
         containsText = true;
     }
 
     /**
-     * Replaces all special characters in an attrubte XML with the corresponding entity
-     * referenced and returns the result as a new String if necessary.
+     * Writes the text replacing all special characters with the corresponding entity
+     * references. Runs of characters without special meaning are written directly from
+     * the source string without allocating any temporary objects.
      * 
      * @param text
      *        Input text, possibly with special characters.
-     * @return Output text with no special characters.
+     * @param attribute
+     *        <tt>True</tt> if the text is an attribute value and quotes have to be
+     *        escaped too.
+     * @throws IOException
+     *         If there was an error writing into the underlying writer.
      */
-    String escapeAttributeValue(String text) {
-        if (text.indexOf('&') < 0 && text.indexOf('<') < 0 && text.indexOf('>') < 0
-                && text.indexOf('\"') < 0 && text.indexOf('\'') < 0)
-            return text;
+    private void writeEscaped(String text, boolean attribute) throws IOException {
+        int start = 0;
         int length = text.length();
-        StringBuffer result = new StringBuffer(length);
         for (int i = 0; i != length; ++i) {
-            char ch = text.charAt(i);
-            switch (ch) {
+            String entity;
+            switch (text.charAt(i)) {
             case '&':
-                result.append("&amp;");
+                entity = "&amp;";
                 break;
             case '<':
-                result.append("&lt;");
+                entity = "&lt;";
                 break;
             case '>':
-                result.append("&gt;");
+                entity = "&gt;";
                 break;
             case '\"':
-                result.append("&quot;");
+                if (!attribute)
+                    continue;
+                entity = "&quot;";
                 break;
             case '\'':
-                result.append("&apos;");
-                break;
-            default:
-                result.append(ch);
-            }
-        }
-        return result.toString();
-    }
-
-    /**
-     * Replaces all special characters in a character data node with the corresponding
-     * entity referenced and returns the result as a new String if necessary.
-     * 
-     * @param text
-     *        Input text, possibly with special characters.
-     * @return Output text with no special characters.
-     */
-    String escapeCharacterData(String text) {
-        if (text.indexOf('&') < 0 && text.indexOf('<') < 0 && text.indexOf('>') < 0)
-            return text;
-        int length = text.length();
-        StringBuffer result = new StringBuffer(length);
-        for (int i = 0; i != length; ++i) {
-            char ch = text.charAt(i);
-            switch (ch) {
-            case '&':
-                result.append("&amp;");
-                break;
-            case '<':
-                result.append("&lt;");
-                break;
-            case '>':
-                result.append("&gt;");
+                if (!attribute)
+                    continue;
+                entity = "&apos;";
                 break;
             default:
-                result.append(ch);
+                continue;
             }
+            if (i != start)
+                writer.write(text, start, i - start);
+            writer.write(entity);
+            start = i + 1;
         }
-        return result.toString();
+        if (length != start)
+            writer.write(text, start, length - start);
     }
 
     private void writeIndentation() throws IOException {
-        for (int i = 0; i != nestedLevel; ++i)
-            writer.write("  ");
+        int count = 2 * nestedLevel;
+        for (; count > INDENTATION.length; count -= INDENTATION.length)
+            writer.write(INDENTATION);
+        writer.write(INDENTATION, 0, count);
     }
 
 }
@@ -21,6 +21,9 @@ package prantl.ant.eclipse;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -34,8 +37,11 @@ import java.util.StringTokenizer;
 import junit.framework.TestCase;
 
 import org.apache.tools.ant.BuildEvent;
+import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.BuildListener;
 import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.Reference;
 
 /**
  * Test fixture with unit test cases for the class <tt>EclipseTask</tt>.
@@ -114,26 +120,26 @@ public class EclipseTaskTest extends TestCase {
         }
 
         /**
-         * @see EclipseOutput#isPreferencesUpToDate(String)
+         * @see EclipseOutput#isPreferencesUpToDate(String, String)
          * @since Ant-Eclipse 1.0
          */
-        boolean isPreferencesUpToDate(String name) {
+        boolean isPreferencesUpToDate(String name, String fingerprint) {
             return false;
         }
 
         /**
-         * @see EclipseOutput#isProjectUpToDate()
+         * @see EclipseOutput#isProjectUpToDate(String)
          * @since Ant-Eclipse 1.0
          */
-        boolean isProjectUpToDate() {
+        boolean isProjectUpToDate(String fingerprint) {
             return false;
         }
 
         /**
-         * @see EclipseOutput#isClassPathUpToDate()
+         * @see EclipseOutput#isClassPathUpToDate(String)
          * @since Ant-Eclipse 1.0
          */
-        boolean isClassPathUpToDate() {
+        boolean isClassPathUpToDate(String fingerprint) {
             return false;
         }
 
@@ -396,11 +402,279 @@ public class EclipseTaskTest extends TestCase {
         assertNull(output.openClassPath());
         assertEquals(
                 "INFO    Writing the preferences for \"org.eclipse.core.resources\".\n"
+                        + "INFO    The preferences for \"org.eclipse.core.resources\" were created.\n"
                         + "WARNING There was no description of a project found.\n"
                         + "WARNING There was no description of a classpath found.\n",
                 logListener.getLog());
     }
 
+    /**
+     * Tests executing the task with the following configuration, expecting the
+     * preferences without the time stamp and with the variables sorted by their names:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot;&gt;
+     *     &lt;settings&gt;
+     *       &lt;resources version=&quot;2&quot; encoding=&quot;UTF-8&quot; /&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteReproducibleWithSettingsElement() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        eclipse.setReproducible(true);
+        SettingsElement settings = new SettingsElement();
+        OrgEclipseCoreResourcesPreferencesElement resources = settings.createResources();
+        resources.setEncoding("UTF-8");
+        resources.setVersion("2");
+        eclipse.setSettings(settings);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        assertEquals("eclipse.preferences.version=2\n" + "encoding/<project>=UTF-8\n",
+                streamToString(output
+                        .openPreferences(OrgEclipseCoreResourcesPreferencesElement
+                                .getPackageName())));
+    }
+
+    /**
+     * Tests executing the task with the following configuration over an existing
+     * preferences file, expecting the declared variables to be updated in place and the
+     * other lines to be kept:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;settings merge=&quot;true&quot;&gt;
+     *       &lt;resources version=&quot;2&quot; encoding=&quot;UTF-8&quot; /&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithSettingsElementWithMerge() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        SettingsElement settings = new SettingsElement();
+        settings.setMerge(true);
+        OrgEclipseCoreResourcesPreferencesElement resources = settings.createResources();
+        resources.setEncoding("UTF-8");
+        resources.setVersion("2");
+        eclipse.setSettings(settings);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        String packageName = OrgEclipseCoreResourcesPreferencesElement.getPackageName();
+        OutputStream existing = output.createPreferences(packageName);
+        existing.write(("#Mon Jan 01 00:00:00 CET 2007\n"
+                + "encoding//src/a.txt=ISO-8859-1\n" + "eclipse.preferences.version=1\n"
+                + "encoding/<project>=Cp1252\n").getBytes("UTF-8"));
+        existing.close();
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        assertEquals("#Mon Jan 01 00:00:00 CET 2007\n" + "encoding//src/a.txt=ISO-8859-1\n"
+                + "eclipse.preferences.version=2\n" + "encoding/<project>=UTF-8\n",
+                streamToString(output.openPreferences(packageName)));
+    }
+
+    /**
+     * Tests executing the task with the following configuration over an existing
+     * preferences file with escaped names, colon separators and continuation lines,
+     * expecting the entries to be matched with the variables by the rules of the class
+     * java.util.Properties:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;settings merge=&quot;true&quot;&gt;
+     *       &lt;general name=&quot;test&quot;&gt;
+     *         &lt;variable name=&quot;a=b&quot; value=&quot;new&quot; /&gt;
+     *         &lt;variable name=&quot;c&quot; value=&quot;new&quot; /&gt;
+     *         &lt;variable name=&quot;d e&quot; value=&quot;new&quot; /&gt;
+     *       &lt;/general&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithSettingsElementWithMergeOfEscapedNames() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        SettingsElement settings = new SettingsElement();
+        settings.setMerge(true);
+        GeneralPreferencesElement general = settings.createGeneral();
+        general.setName("test");
+        general.setVersion("1");
+        VariableElement variable = general.createVariable();
+        variable.setName("a=b");
+        variable.setValue("new");
+        variable = general.createVariable();
+        variable.setName("c");
+        variable.setValue("new");
+        variable = general.createVariable();
+        variable.setName("d e");
+        variable.setValue("new");
+        eclipse.setSettings(settings);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        OutputStream existing = output.createPreferences("test");
+        existing.write(("eclipse.preferences.version=1\n" + "a\\=b=old\n" + "a=keep\n"
+                + "#c=comment\\\n" + "x=long\\\n" + "  c=inside\n" + "  c : old\n"
+                + "c\\:d=keep\n").getBytes("UTF-8"));
+        existing.close();
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        assertEquals("eclipse.preferences.version=1\n" + "a\\=b=new\n" + "a=keep\n"
+                + "#c=comment\\\n" + "x=long\\\n" + "  c=inside\n" + "c=new\n"
+                + "c\\:d=keep\n" + "d\\ e=new\n", streamToString(output
+                .openPreferences("test")));
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the variables
+     * from the profile to be added unless they are defined by the element:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot;&gt;
+     *     &lt;settings&gt;
+     *       &lt;general name=&quot;test&quot; profile=&quot;...&quot;&gt;
+     *         &lt;variable name=&quot;b&quot; value=&quot;own&quot; /&gt;
+     *       &lt;/general&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithSettingsElementWithProfile() throws Exception {
+        File profile = File.createTempFile("ant-eclipse", ".xml");
+        try {
+            OutputStream stream = new FileOutputStream(profile);
+            stream.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                    + "<profiles version=\"1\">\n"
+                    + "  <profile kind=\"CodeFormatterProfile\" name=\"test\">\n"
+                    + "    <setting id=\"b\" value=\"profile\" />\n"
+                    + "    <setting id=\"a\" value=\"profile\" />\n" + "  </profile>\n"
+                    + "</profiles>\n").getBytes("UTF-8"));
+            stream.close();
+            EclipseElement eclipse = new EclipseElement();
+            eclipse.setReproducible(true);
+            SettingsElement settings = new SettingsElement();
+            GeneralPreferencesElement general = settings.createGeneral();
+            general.setName("test");
+            general.setProfile(profile);
+            VariableElement variable = general.createVariable();
+            variable.setName("b");
+            variable.setValue("own");
+            eclipse.setSettings(settings);
+
+            MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+            EclipseTaskTester task = new EclipseTaskTester(output);
+            task.execute();
+
+            assertEquals("a=profile\n" + "b=own\n" + "eclipse.preferences.version=1\n",
+                    streamToString(output.openPreferences("test")));
+        } finally {
+            profile.delete();
+        }
+    }
+
+    /**
+     * Tests executing the task with the following configuration and a profile with
+     * exported preferences (<tt>.epf</tt>), expecting only the variables qualified by
+     * the instance scope and the package of the element to be added:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot;&gt;
+     *     &lt;settings&gt;
+     *       &lt;general name=&quot;test&quot; profile=&quot;...&quot; /&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithSettingsElementWithExportedProfile() throws Exception {
+        File profile = File.createTempFile("ant-eclipse", ".epf");
+        try {
+            OutputStream stream = new FileOutputStream(profile);
+            stream.write(("#Mon Jan 01 00:00:00 CET 2007\n" + "\\!/=\n"
+                    + "/instance/test/a=profile\n" + "/configuration/test/b=other\n"
+                    + "/instance/other/c=other\n" + "@test=1.0\n" + "d=unqualified\n"
+                    + "file_export_version=3.0\n").getBytes("UTF-8"));
+            stream.close();
+            EclipseElement eclipse = new EclipseElement();
+            eclipse.setReproducible(true);
+            SettingsElement settings = new SettingsElement();
+            GeneralPreferencesElement general = settings.createGeneral();
+            general.setName("test");
+            general.setProfile(profile);
+            eclipse.setSettings(settings);
+
+            MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+            EclipseTaskTester task = new EclipseTaskTester(output);
+            task.execute();
+
+            assertEquals("a=profile\n" + "eclipse.preferences.version=1\n",
+                    streamToString(output.openPreferences("test")));
+        } finally {
+            profile.delete();
+        }
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the defaults
+     * for the compliance level to be taken from the table of options:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot;&gt;
+     *     &lt;settings&gt;
+     *       &lt;jdtcore compilercompliance=&quot;17&quot; /&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithJdtCoreElementWithModernCompliance() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        eclipse.setReproducible(true);
+        SettingsElement settings = new SettingsElement();
+        settings.createJdtCore().setCompilerCompliance("17");
+        eclipse.setSettings(settings);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        assertEquals("eclipse.preferences.version=1\n"
+                + "org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode=enabled\n"
+                + "org.eclipse.jdt.core.compiler.codegen.targetPlatform=17\n"
+                + "org.eclipse.jdt.core.compiler.codegen.unusedLocal=preserve\n"
+                + "org.eclipse.jdt.core.compiler.compliance=17\n"
+                + "org.eclipse.jdt.core.compiler.debug.lineNumber=generate\n"
+                + "org.eclipse.jdt.core.compiler.debug.localVariable=generate\n"
+                + "org.eclipse.jdt.core.compiler.debug.sourceFile=generate\n"
+                + "org.eclipse.jdt.core.compiler.problem.assertIdentifier=error\n"
+                + "org.eclipse.jdt.core.compiler.problem.enumIdentifier=error\n"
+                + "org.eclipse.jdt.core.compiler.source=17\n", streamToString(output
+                .openPreferences(OrgEclipseJdtCorePreferencesElement.getPackageName())));
+        try {
+            new SettingsElement().createJdtCore().setCompilerCompliance("7.0");
+            fail("The compliance level 7.0 is not supported.");
+        } catch (BuildException exception) {
+        }
+    }
+
     /**
      * Tests executing the task with the following configuration:
      * 
@@ -445,6 +719,7 @@ public class EclipseTaskTest extends TestCase {
         assertEquals("WARNING There were no settings found.\n"
                 + "INFO    Writing the project definition in the mode \"java\".\n"
                 + "VERBOSE Project name is \"eclipse\".\n"
+                + "INFO    The project definition was created.\n"
                 + "WARNING There was no description of a classpath found.\n", logListener
                 .getLog());
     }
@@ -495,10 +770,770 @@ public class EclipseTaskTest extends TestCase {
         assertEquals("WARNING There were no settings found.\n"
                 + "INFO    Writing the project definition in the mode \"java\".\n"
                 + "VERBOSE Project name is \"test\".\n"
+                + "INFO    The project definition was created.\n"
                 + "WARNING There was no description of a classpath found.\n", logListener
                 .getLog());
     }
 
+    /**
+     * Tests executing the task twice with the following configuration, expecting the
+     * second run not to rewrite the file .project:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;project /&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteTwiceWithEmptyProjectElement() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        eclipse.setProject(new ProjectElement());
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+        String projectOutput = streamToString(output.openProject());
+
+        MemoryLogListener logListener = new MemoryLogListener(Project.MSG_INFO);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+
+        assertEquals(projectOutput, streamToString(output.openProject()));
+        assertEquals("WARNING There were no settings found.\n"
+                + "INFO    Writing the project definition in the mode \"java\".\n"
+                + "INFO    The project definition was unchanged.\n"
+                + "WARNING There was no description of a classpath found.\n", logListener
+                .getLog());
+    }
+
+    /**
+     * Tests executing more independent tasks concurrently, each with the following
+     * configuration, expecting all of them to produce the same preferences:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;settings&gt;
+     *       &lt;jdtcore compilercompliance=&quot;5.0&quot; /&gt;
+     *       &lt;resources encoding=&quot;UTF-8&quot; /&gt;
+     *       &lt;runtime lineseparator=&quot;unix&quot; /&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If some task execution fails.
+     */
+    public void testExecuteConcurrentlyWithSettingsElements() throws Exception {
+        final String[] results = new String[8];
+        final Throwable[] failures = new Throwable[results.length];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i != threads.length; ++i) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+
+                public void run() {
+                    try {
+                        EclipseElement eclipse = new EclipseElement();
+                        SettingsElement settings = new SettingsElement();
+                        settings.createJdtCore().setCompilerCompliance("5.0");
+                        settings.createResources().setEncoding("UTF-8");
+                        settings.createRuntime().setLineSeparator("unix");
+                        eclipse.setSettings(settings);
+
+                        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+                        new EclipseTaskTester(output).execute();
+                        results[index] = skipLine(streamToString(output
+                                .openPreferences(OrgEclipseJdtCorePreferencesElement
+                                        .getPackageName())));
+                    } catch (Throwable exception) {
+                        failures[index] = exception;
+                    }
+                }
+
+            });
+        }
+        for (int i = 0; i != threads.length; ++i)
+            threads[i].start();
+        for (int i = 0; i != threads.length; ++i)
+            threads[i].join();
+
+        for (int i = 0; i != results.length; ++i) {
+            if (failures[i] != null)
+                fail("The task " + (i + 1) + " failed: " + failures[i]);
+            assertEqualAllLines("org.eclipse.jdt.core.compiler.codegen.inlineJsrBytecode=enabled\n"
+                    + "org.eclipse.jdt.core.compiler.codegen.targetPlatform=1.5\n"
+                    + "org.eclipse.jdt.core.compiler.codegen.unusedLocal=preserve\n"
+                    + "org.eclipse.jdt.core.compiler.compliance=5.0\n"
+                    + "org.eclipse.jdt.core.compiler.debug.lineNumber=generate\n"
+                    + "org.eclipse.jdt.core.compiler.debug.localVariable=generate\n"
+                    + "org.eclipse.jdt.core.compiler.debug.sourceFile=generate\n"
+                    + "org.eclipse.jdt.core.compiler.problem.assertIdentifier=error\n"
+                    + "org.eclipse.jdt.core.compiler.problem.enumIdentifier=error\n"
+                    + "org.eclipse.jdt.core.compiler.source=1.5\n"
+                    + "eclipse.preferences.version=1\n", results[i]);
+        }
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the log
+     * messages in the same order as if the files were generated one after another:
+     * 
+     * <pre>
+     *   &lt;eclipse parallel=&quot;true&quot;&gt;
+     *     &lt;project /&gt;
+     *     &lt;classpath /&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteParallelWithProjectAndClassPathElements() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        eclipse.setParallel(true);
+        eclipse.setProject(new ProjectElement());
+        eclipse.setClassPath(new ClassPathElement());
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        MemoryLogListener logListener = new MemoryLogListener(Project.MSG_INFO);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+
+        assertNotNull(output.openProject());
+        assertNotNull(output.openClassPath());
+        assertEquals("WARNING There were no settings found.\n"
+                + "INFO    Writing the project definition in the mode \"java\".\n"
+                + "INFO    The project definition was created.\n"
+                + "INFO    Writing the classpath definition.\n"
+                + "INFO    The classpath definition was created.\n", logListener
+                .getLog());
+    }
+
+    /**
+     * Tests executing the task twice with the following configuration, expecting the
+     * messages of the paths resolved by more threads to be logged in the order of the
+     * elements together with the other messages of the classpath:
+     * 
+     * <pre>
+     *   &lt;eclipse parallel=&quot;true&quot;&gt;
+     *     &lt;classpath threadcount=&quot;2&quot;&gt;
+     *       &lt;library pathref=&quot;libraries&quot; /&gt;
+     *       &lt;library pathref=&quot;more&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteParallelWithClassPathElementWithThreadCount() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        eclipse.setParallel(true);
+        ClassPathElement classPath = new ClassPathElement();
+        classPath.setThreadCount(2);
+        classPath.createLibrary().setPathRef(new Reference("libraries"));
+        classPath.createLibrary().setPathRef(new Reference("more"));
+        eclipse.setClassPath(classPath);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        Project project = task.getProject();
+        project.addReference("libraries", new Path(project, "a.jar:b.jar"));
+        project.addReference("more", new Path(project, "c.jar"));
+        task.execute();
+        MemoryLogListener logListener = new MemoryLogListener(Project.MSG_DEBUG);
+        project.addBuildListener(logListener);
+        task.execute();
+
+        StringBuffer log = new StringBuffer();
+        String[] lines = split(logListener.getLog(), "\n");
+        for (int i = 0; i != lines.length; ++i)
+            if (lines[i].indexOf("settings") >= 0 || lines[i].indexOf("cached") >= 0
+                    || lines[i].indexOf("classpath definition") >= 0)
+                log.append(lines[i]).append('\n');
+        assertEquals("WARNING There were no settings found.\n"
+                + "DEBUG   Using the cached content of the path \"libraries\".\n"
+                + "DEBUG   Using the cached content of the path \"more\".\n"
+                + "INFO    Writing the classpath definition.\n"
+                + "INFO    The classpath definition was unchanged.\n", log.toString());
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the later
+     * definition of a library to update the earlier one at its original position:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;classpath&gt;
+     *       &lt;library path=&quot;a.jar:b.jar&quot; /&gt;
+     *       &lt;library path=&quot;a.jar&quot; source=&quot;a-src.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithClassPathElementWithDuplicateLibraries() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        ClassPathElement classPath = new ClassPathElement();
+        classPath.createLibrary().setPath("a.jar:b.jar");
+        ClassPathEntryLibraryElement library = classPath.createLibrary();
+        library.setPath("a.jar");
+        library.setSource("a-src.jar");
+        eclipse.setClassPath(classPath);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        String classPathOutput = streamToString(output.openClassPath());
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<classpath>\n"
+                + "  <classpathentry kind=\"con\" path=\"org.eclipse.jdt.launching.JRE_CONTAINER\" />\n"
+                + "  <classpathentry kind=\"src\" path=\"\" />\n"
+                + "  <classpathentry kind=\"lib\" path=\"a.jar\" sourcepath=\"a-src.jar\" />\n"
+                + "  <classpathentry kind=\"lib\" path=\"b.jar\" />\n"
+                + "  <classpathentry kind=\"output\" path=\"\" />\n" + "</classpath>",
+                classPathOutput);
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the paths
+     * resolved by more threads to produce the same file as resolved by a single one:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;classpath threadcount=&quot;4&quot;&gt;
+     *       &lt;library path=&quot;a0.jar:b0.jar&quot; /&gt;
+     *       ...
+     *       &lt;library path=&quot;a9.jar:b9.jar&quot; sourcepath=&quot;src.jar&quot; /&gt;
+     *       &lt;library path=&quot;a0.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithClassPathElementWithThreadCount() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        ClassPathElement classPath = new ClassPathElement();
+        for (int i = 0; i != 10; ++i) {
+            ClassPathEntryLibraryElement library = classPath.createLibrary();
+            library.setPath("a" + i + ".jar:b" + i + ".jar");
+            if (i == 9)
+                library.setSource("src.jar");
+        }
+        classPath.createLibrary().setPath("a0.jar");
+        eclipse.setClassPath(classPath);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        new EclipseTaskTester(output).execute();
+        String expected = streamToString(output.openClassPath());
+        classPath.setThreadCount(4);
+        output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        MemoryLogListener logListener = new MemoryLogListener(Project.MSG_VERBOSE);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+
+        assertEquals(expected, streamToString(output.openClassPath()));
+        assertTrue(logListener.getLog().indexOf(
+                "Resolving 12 paths using up to 4 threads.") >= 0);
+        assertTrue(expected.indexOf("<classpathentry kind=\"lib\" path=\"a0.jar\" />") > 0);
+        assertTrue(expected.indexOf("<classpathentry kind=\"lib\" path=\"b9.jar\" "
+                + "sourcepath=\"src.jar\" />") > 0);
+    }
+
+    /**
+     * Tests executing the task with the following configuration in the directory
+     * <tt>app</tt>, expecting the library in the sibling directory <tt>app2</tt> not to
+     * be taken for a path under the base directory and to be written relative to it
+     * only if parent paths are enabled:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot;&gt;
+     *     &lt;classpath parentpaths=&quot;...&quot;&gt;
+     *       &lt;library path=&quot;${basedir}/lib/a.jar:${basedir}2/b.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithClassPathElementWithSiblingDirectory() throws Exception {
+        File baseDirectory = File.createTempFile("app", "");
+        baseDirectory.delete();
+        baseDirectory.mkdir();
+        try {
+            String sibling = baseDirectory.getName() + "2";
+            String siblingPath = baseDirectory.getAbsolutePath() + "2" + File.separator
+                    + "b.jar";
+            EclipseElement eclipse = new EclipseElement();
+            eclipse.setReproducible(true);
+            ClassPathElement classPath = new ClassPathElement();
+            classPath.createLibrary().setPath(
+                    baseDirectory.getAbsolutePath() + File.separator + "lib"
+                            + File.separator + "a.jar" + File.pathSeparator
+                            + siblingPath);
+            eclipse.setClassPath(classPath);
+
+            MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+            EclipseTaskTester task = new EclipseTaskTester(output);
+            task.getProject().setBaseDir(baseDirectory);
+            task.execute();
+
+            String classPathOutput = streamToString(output.openClassPath());
+            assertTrue(classPathOutput, classPathOutput
+                    .indexOf("<classpathentry kind=\"lib\" path=\"lib/a.jar\" />") > 0);
+            assertTrue(classPathOutput, classPathOutput
+                    .indexOf("<classpathentry kind=\"lib\" path=\""
+                            + siblingPath.replace('\\', '/') + "\" />") > 0);
+
+            classPath.setParentPaths(true);
+            output = new MemoryEclipseOutput(eclipse);
+            task = new EclipseTaskTester(output);
+            task.getProject().setBaseDir(baseDirectory);
+            task.execute();
+
+            classPathOutput = streamToString(output.openClassPath());
+            assertTrue(classPathOutput, classPathOutput
+                    .indexOf("<classpathentry kind=\"lib\" path=\"lib/a.jar\" />") > 0);
+            assertTrue(classPathOutput, classPathOutput
+                    .indexOf("<classpathentry kind=\"lib\" path=\"../" + sibling
+                            + "/b.jar\" />") > 0);
+        } finally {
+            baseDirectory.delete();
+        }
+    }
+
+    /**
+     * Tests executing the task with the following configuration over an existing file
+     * .classpath, expecting the entry added in Eclipse to be kept and the entry generated
+     * before to be dropped:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;classpath merge=&quot;true&quot;&gt;
+     *       &lt;library path=&quot;a.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithClassPathElementWithMerge() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        ClassPathElement classPath = new ClassPathElement();
+        classPath.setMerge(true);
+        classPath.createLibrary().setPath("a.jar");
+        eclipse.setClassPath(classPath);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        OutputStream existing = output.createClassPath();
+        existing.write(("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<classpath>\n"
+                + "  <classpathentry kind=\"src\" path=\"\" />\n"
+                + "  <classpathentry kind=\"lib\" path=\"old.jar\">\n"
+                + "    <attributes>\n"
+                + "      <attribute value=\"true\" name=\"ant-eclipse.generated\" />\n"
+                + "    </attributes>\n"
+                + "  </classpathentry>\n"
+                + "  <classpathentry kind=\"lib\" path=\"user.jar\">\n"
+                + "    <accessrules>\n"
+                + "      <accessrule kind=\"accessible\" pattern=\"**\" />\n"
+                + "    </accessrules>\n"
+                + "  </classpathentry>\n"
+                + "  <classpathentry kind=\"output\" path=\"bin\" />\n" + "</classpath>")
+                .getBytes("UTF-8"));
+        existing.close();
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        String classPathOutput = streamToString(output.openClassPath());
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<classpath>\n"
+                + "  <classpathentry kind=\"con\" path=\"org.eclipse.jdt.launching.JRE_CONTAINER\">\n"
+                + "    <attributes>\n"
+                + "      <attribute value=\"true\" name=\"ant-eclipse.generated\" />\n"
+                + "    </attributes>\n"
+                + "  </classpathentry>\n"
+                + "  <classpathentry kind=\"src\" path=\"\">\n"
+                + "    <attributes>\n"
+                + "      <attribute value=\"true\" name=\"ant-eclipse.generated\" />\n"
+                + "    </attributes>\n"
+                + "  </classpathentry>\n"
+                + "  <classpathentry kind=\"lib\" path=\"a.jar\">\n"
+                + "    <attributes>\n"
+                + "      <attribute value=\"true\" name=\"ant-eclipse.generated\" />\n"
+                + "    </attributes>\n"
+                + "  </classpathentry>\n"
+                + "  <classpathentry kind=\"lib\" path=\"user.jar\">\n"
+                + "    <accessrules>\n"
+                + "      <accessrule kind=\"accessible\" pattern=\"**\" />\n"
+                + "    </accessrules>\n"
+                + "  </classpathentry>\n"
+                + "  <classpathentry kind=\"output\" path=\"\">\n"
+                + "    <attributes>\n"
+                + "      <attribute value=\"true\" name=\"ant-eclipse.generated\" />\n"
+                + "    </attributes>\n"
+                + "  </classpathentry>\n" + "</classpath>", classPathOutput);
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the libraries
+     * to be published as a path reference and written into an argument file with their
+     * paths resolved by the base directory, not by the directory of the project, also in
+     * the streaming mode:
+     * 
+     * <pre>
+     *   &lt;eclipse destdir=&quot;sub&quot;&gt;
+     *     &lt;classpath outputrefid=&quot;libraries&quot; argfile=&quot;...&quot;&gt;
+     *       &lt;variable path=&quot;JUNIT_HOME/junit.jar&quot; /&gt;
+     *       &lt;library path=&quot;a.jar:sub/b.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithClassPathElementWithOutputRefidAndArgFile() throws Exception {
+        File argFile = File.createTempFile("classpath", ".args");
+        argFile.delete();
+        try {
+            EclipseElement eclipse = new EclipseElement();
+            eclipse.setDestDir(new File("sub"));
+            ClassPathElement classPath = new ClassPathElement();
+            classPath.setOutputRefid("libraries");
+            classPath.setArgFile(argFile);
+            classPath.createVariable().setPath("JUNIT_HOME/junit.jar");
+            classPath.createLibrary().setPath("a.jar:sub/b.jar");
+            eclipse.setClassPath(classPath);
+
+            MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+            EclipseTaskTester task = new EclipseTaskTester(output);
+            task.execute();
+
+            File first = task.getProject().resolveFile("a.jar");
+            File second = task.getProject().resolveFile("sub/b.jar");
+            Path path = (Path) task.getProject().getReference("libraries");
+            assertNotNull(path);
+            assertEquals(Arrays.asList(new String[] { first.getAbsolutePath(),
+                    second.getAbsolutePath() }), Arrays.asList(path.list()));
+            assertEquals("-classpath \"" + escapeArgument(first.getAbsolutePath())
+                    + File.pathSeparatorChar + escapeArgument(second.getAbsolutePath())
+                    + "\"\n", streamToString(new FileInputStream(argFile)));
+            long modified = argFile.lastModified();
+            argFile.setLastModified(modified - 10000);
+            new EclipseTaskTester(new MemoryEclipseOutput(eclipse)).execute();
+            assertEquals(modified - 10000, argFile.lastModified());
+            classPath.setStreaming(true);
+            task = new EclipseTaskTester(new MemoryEclipseOutput(eclipse));
+            task.execute();
+            path = (Path) task.getProject().getReference("libraries");
+            assertEquals(Arrays.asList(new String[] { first.getAbsolutePath(),
+                    second.getAbsolutePath() }), Arrays.asList(path.list()));
+        } finally {
+            argFile.delete();
+        }
+    }
+
+    /**
+     * Tests executing the task with the following configuration in the streaming mode,
+     * expecting the same output as without streaming:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;classpath streaming=&quot;true&quot;&gt;
+     *       &lt;variable path=&quot;JUNIT_HOME/junit.jar&quot; /&gt;
+     *       &lt;library path=&quot;a.jar:b.jar:c.jar&quot; /&gt;
+     *       &lt;library path=&quot;c.jar:a.jar&quot; sourcepath=&quot;src.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithClassPathElementWithStreaming() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        ClassPathElement classPath = new ClassPathElement();
+        classPath.createVariable().setPath("JUNIT_HOME/junit.jar");
+        classPath.createLibrary().setPath("a.jar:b.jar:c.jar");
+        ClassPathEntryLibraryElement library = classPath.createLibrary();
+        library.setPath("c.jar:a.jar");
+        library.setSource("src.jar");
+        eclipse.setClassPath(classPath);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        new EclipseTaskTester(output).execute();
+        String expected = streamToString(output.openClassPath());
+        classPath.setStreaming(true);
+        output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        task.execute();
+
+        String classPathOutput = streamToString(output.openClassPath());
+        assertEquals(expected, classPathOutput);
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<classpath>\n"
+                + "  <classpathentry kind=\"con\" path=\"org.eclipse.jdt.launching.JRE_CONTAINER\" />\n"
+                + "  <classpathentry kind=\"src\" path=\"\" />\n"
+                + "  <classpathentry kind=\"var\" path=\"JUNIT_HOME/junit.jar\" />\n"
+                + "  <classpathentry kind=\"lib\" path=\"a.jar\" sourcepath=\"src.jar\" />\n"
+                + "  <classpathentry kind=\"lib\" path=\"b.jar\" />\n"
+                + "  <classpathentry kind=\"lib\" path=\"c.jar\" sourcepath=\"src.jar\" />\n"
+                + "  <classpathentry kind=\"output\" path=\"\" />\n" + "</classpath>",
+                classPathOutput);
+        // the model is not resolved unless requested
+        assertNull(task.getResolvedProject());
+
+        classPath.setMerge(true);
+        try {
+            new EclipseTaskTester(new MemoryEclipseOutput(eclipse)).execute();
+            fail();
+        } catch (BuildException exception) {
+        }
+    }
+
+    /**
+     * Tests executing the task with the following configuration, expecting the resolved
+     * project to be written into its binary form and read back and rendered into the
+     * same files without resolving again and the file to be left untouched by the next
+     * execution; a string longer than 64 KB is expected to be written and read back too:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot; modelfile=&quot;...&quot;&gt;
+     *     &lt;settings&gt;
+     *       &lt;resources encoding=&quot;UTF-8&quot; /&gt;
+     *     &lt;/settings&gt;
+     *     &lt;project /&gt;
+     *     &lt;classpath&gt;
+     *       &lt;library path=&quot;a.jar:b.jar&quot; source=&quot;a-src.jar&quot; /&gt;
+     *     &lt;/classpath&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testRenderReadResolvedProject() throws Exception {
+        EclipseElement eclipse = new EclipseElement();
+        eclipse.setReproducible(true);
+        SettingsElement settings = new SettingsElement();
+        settings.createResources().setEncoding("UTF-8");
+        eclipse.setSettings(settings);
+        eclipse.setProject(new ProjectElement());
+        ClassPathElement classPath = new ClassPathElement();
+        ClassPathEntryLibraryElement library = classPath.createLibrary();
+        library.setPath("a.jar:b.jar");
+        library.setSource("a-src.jar");
+        eclipse.setClassPath(classPath);
+
+        File modelFile = File.createTempFile("project", ".model");
+        modelFile.delete();
+        eclipse.setModelFile(modelFile);
+
+        MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+        EclipseTaskTester task = new EclipseTaskTester(output);
+        ResolvedEclipseProject project;
+        try {
+            task.execute();
+            assertTrue(modelFile.isFile());
+            assertNotNull(task.getResolvedProject());
+            modelFile.setLastModified(modelFile.lastModified() - 10000);
+            long lastModified = modelFile.lastModified();
+            new EclipseTaskTester(new MemoryEclipseOutput(eclipse)).execute();
+            assertEquals(lastModified, modelFile.lastModified());
+            InputStream input = new FileInputStream(modelFile);
+            try {
+                project = ResolvedEclipseProject.read(input);
+            } finally {
+                input.close();
+            }
+        } finally {
+            modelFile.delete();
+        }
+        assertEquals(streamToString(output.openProject()),
+                streamToString(new ByteArrayInputStream(EclipseRenderer
+                        .renderProject(project.getDescription()))));
+        assertEquals(streamToString(output.openClassPath()),
+                streamToString(new ByteArrayInputStream(EclipseRenderer
+                        .renderClassPath(project.getClassPathEntries()))));
+        ResolvedEclipseProject.Preferences[] preferences = project.getPreferences();
+        assertEquals(1, preferences.length);
+        assertEquals(streamToString(output.openPreferences(preferences[0].name)),
+                streamToString(new ByteArrayInputStream(EclipseRenderer.renderPreferences(
+                        preferences[0], false))));
+
+        char[] name = new char[70000];
+        Arrays.fill(name, '\u00e9');
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        new ResolvedEclipseProject(new ResolvedEclipseProject.Description(new String(name),
+                null, new String[0]), (ResolvedEclipseProject.ClassPathEntry[]) null, null)
+                .write(buffer);
+        project = ResolvedEclipseProject.read(new ByteArrayInputStream(buffer
+                .toByteArray()));
+        assertEquals(new String(name), project.getDescription().name);
+    }
+
+    /**
+     * Tests storing classpath entries of two projects in a shared pool, expecting the
+     * entries to be restored unchanged and the common paths to be interned once.
+     */
+    public void testStoreClassPathEntriesInSharedPool() {
+        ResolvedEclipseProject.ClassPathEntry[] entries = new ResolvedEclipseProject.ClassPathEntry[] {
+                new ResolvedEclipseProject.ClassPathEntry("src", "", false, null, null,
+                        "**/*Test.java", "bin/test"),
+                new ResolvedEclipseProject.ClassPathEntry("lib", "/repo/lib/a.jar", true,
+                        "/repo/lib/a-src.jar", "file:/repo/doc/a/", null, null),
+                new ResolvedEclipseProject.ClassPathEntry("lib",
+                        "C:\\repo\\lib\\\u00fcber-\u20ac.jar"),
+                new ResolvedEclipseProject.ClassPathEntry("output", "bin") };
+        InternedPathPool pool = new InternedPathPool();
+        ClassPathEntryStore first = new ClassPathEntryStore(entries, pool);
+        ClassPathEntryStore second = new ClassPathEntryStore(entries, pool);
+        assertEquals(entries.length, second.size());
+        ResolvedEclipseProject.ClassPathEntry[] restored = second.toArray();
+        for (int i = 0; i != entries.length; ++i) {
+            assertEquals(entries[i].kind, restored[i].kind);
+            assertEquals(entries[i].path, restored[i].path);
+            assertEquals(entries[i].exported, restored[i].exported);
+            assertEquals(entries[i].sourcePath, restored[i].sourcePath);
+            assertEquals(entries[i].javadocLocation, restored[i].javadocLocation);
+            assertEquals(entries[i].excluding, restored[i].excluding);
+            assertEquals(entries[i].output, restored[i].output);
+        }
+        assertEquals(entries[1].path, first.get(1).path);
+        assertEquals(pool.internPath("/repo/lib/a.jar"), pool.internPath(new String(
+                "/repo/lib/a.jar")));
+        assertEquals(-1, pool.internPath(null));
+        assertEquals(0, pool.internPath(""));
+    }
+
+    /**
+     * Tests collecting classpath entries into a store, expecting a binary entry stored
+     * again with the same path to replace the earlier one at its position, while a
+     * source with the same path is kept, and the store to grow beyond its initial size.
+     */
+    public void testCollectClassPathEntriesIntoStore() {
+        ClassPathEntryStore store = new ClassPathEntryStore(new InternedPathPool());
+        store.add(new ResolvedEclipseProject.ClassPathEntry("src", "a.jar"));
+        assertFalse(store.contains("a.jar"));
+        for (int i = 0; i != 100; ++i)
+            assertFalse(store.put(new ResolvedEclipseProject.ClassPathEntry("lib", "lib/"
+                    + i + ".jar")));
+        assertFalse(store.put(new ResolvedEclipseProject.ClassPathEntry("lib", "a.jar")));
+        assertTrue(store.put(new ResolvedEclipseProject.ClassPathEntry("lib", "lib/5.jar",
+                true, "src/5.jar", "file:/doc/5/", null, null)));
+        store.add(new ResolvedEclipseProject.ClassPathEntry("output", "bin"));
+        assertEquals(103, store.size());
+        assertTrue(store.contains("a.jar"));
+        assertEquals("src", store.get(0).kind);
+        assertEquals("lib/5.jar", store.get(6).path);
+        assertTrue(store.get(6).exported);
+        assertEquals("src/5.jar", store.get(6).sourcePath);
+        assertEquals("file:/doc/5/", store.get(6).javadocLocation);
+        assertNull(store.get(7).javadocLocation);
+        assertEquals("a.jar", store.get(101).path);
+        assertEquals("lib", store.get(101).kind);
+        assertEquals("output", store.get(102).kind);
+    }
+
+    /**
+     * Tests executing two tasks with the following configuration, expecting the second
+     * one to take the file .project from the cache:
+     * 
+     * <pre>
+     *   &lt;eclipse cachedir=&quot;...&quot;&gt;
+     *     &lt;project /&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteTwiceWithCacheDir() throws Exception {
+        File cacheDir = File.createTempFile("ant-eclipse", ".cache");
+        cacheDir.delete();
+        try {
+            EclipseElement eclipse = new EclipseElement();
+            eclipse.setCacheDir(cacheDir);
+            eclipse.setProject(new ProjectElement());
+            MemoryEclipseOutput output = new MemoryEclipseOutput(eclipse);
+            new EclipseTaskTester(output).execute();
+            String projectOutput = streamToString(output.openProject());
+
+            output = new MemoryEclipseOutput(eclipse);
+            EclipseTaskTester task = new EclipseTaskTester(output);
+            MemoryLogListener logListener = new MemoryLogListener(Project.MSG_INFO);
+            task.getProject().addBuildListener(logListener);
+            task.execute();
+
+            assertEquals(projectOutput, streamToString(output.openProject()));
+            assertEquals("WARNING There were no settings found.\n"
+                    + "INFO    Writing the project definition in the mode \"java\".\n"
+                    + "INFO    The project definition was created.\n"
+                    + "WARNING There was no description of a classpath found.\n"
+                    + "INFO    Generation cache: 1 hits of 1 lookups (100%), "
+                    + projectOutput.length() + " bytes saved.\n", logListener.getLog());
+        } finally {
+            File[] directories = cacheDir.listFiles();
+            for (int i = 0; directories != null && i != directories.length; ++i) {
+                File[] files = directories[i].listFiles();
+                for (int j = 0; files != null && j != files.length; ++j)
+                    files[j].delete();
+                directories[i].delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    /**
+     * Tests that the names of variables and preferences are checked for duplicates
+     * including the variables which have been renamed:
+     * 
+     * <pre>
+     *   &lt;settings&gt;
+     *     &lt;general name=&quot;test&quot;&gt;
+     *       &lt;variable name=&quot;a&quot; /&gt;
+     *       &lt;variable name=&quot;b&quot; /&gt;
+     *     &lt;/general&gt;
+     *   &lt;/settings&gt;
+     * </pre>
+     */
+    public void testDuplicateNamesInSettingsElement() {
+        SettingsElement settings = new SettingsElement();
+        GeneralPreferencesElement general = settings.createGeneral();
+        general.setName("test");
+        try {
+            settings.createGeneral().setName("test");
+            fail("The duplicate preferences \"test\" were accepted.");
+        } catch (BuildException exception) {
+        }
+        VariableElement variable = general.createVariable();
+        variable.setName("x");
+        variable.setName("a");
+        general.createVariable().setName("b");
+        try {
+            general.createVariable().setName("a");
+            fail("The duplicate variable \"a\" was accepted.");
+        } catch (BuildException exception) {
+        }
+        general.createVariable().setName("x");
+        assertSame(variable, general.getVariable("a"));
+        assertSame(general, settings.getPreferences("test"));
+        assertEquals(4, general.getVariables().size());
+    }
+
     private String streamToString(InputStream input) throws IOException {
         InputStreamReader reader = new InputStreamReader(input, "UTF-8");
         StringBuffer content = new StringBuffer();
@@ -507,6 +1542,16 @@ public class EclipseTaskTest extends TestCase {
         return content.toString();
     }
 
+    private String escapeArgument(String input) {
+        StringBuffer result = new StringBuffer();
+        for (int i = 0, length = input.length(); i != length; ++i) {
+            if (input.charAt(i) == '\\')
+                result.append('\\');
+            result.append(input.charAt(i));
+        }
+        return result.toString();
+    }
+
     private String skipLine(String input) {
         int next = input.indexOf('\n');
         return next >= 0 ? input.substring(next + 1) : "";
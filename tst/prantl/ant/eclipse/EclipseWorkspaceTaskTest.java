@@ -0,0 +1,256 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.DirSet;
+
+/**
+ * Test fixture with unit test cases for the class <tt>EclipseWorkspaceTask</tt>, which
+ * generate projects for modules in a temporary directory.
+ * 
+ * @see EclipseWorkspaceTask
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class EclipseWorkspaceTaskTest extends TestCase {
+
+    private File directory;
+
+    /**
+     * Creates a new instance of the test fixture. Default constructor.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public EclipseWorkspaceTaskTest() {
+    }
+
+    /**
+     * Creates a temporary directory with the modules <tt>modules/a</tt>,
+     * <tt>modules/b</tt> and <tt>other</tt>.
+     * 
+     * @throws Exception
+     *         If the directories cannot be created.
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("ant-eclipse", ".test");
+        directory.delete();
+        assertTrue(new File(directory, "modules/a").mkdirs());
+        assertTrue(new File(directory, "modules/b").mkdirs());
+        assertTrue(new File(directory, "other").mkdirs());
+    }
+
+    /**
+     * Deletes the temporary directory with all its content.
+     * 
+     * @throws Exception
+     *         If the directory cannot be deleted.
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        deleteDirectory(directory);
+    }
+
+    /**
+     * Tests executing the task twice with the following configuration, expecting the
+     * modules found by the dirset to be named by their directories, the explicit module
+     * to use its own project element and the second execution to find all modules
+     * up-to-date:
+     * 
+     * <pre>
+     *   &lt;eclipseworkspace threadcount=&quot;2&quot;&gt;
+     *     &lt;dirset dir=&quot;modules&quot; includes=&quot;*&quot; /&gt;
+     *     &lt;module dir=&quot;other&quot; name=&quot;custom&quot;&gt;
+     *       &lt;project name=&quot;Custom&quot; /&gt;
+     *     &lt;/module&gt;
+     *     &lt;project /&gt;
+     *   &lt;/eclipseworkspace&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteTwiceWithDirSetAndModule() throws Exception {
+        EclipseWorkspaceTask task = createTask();
+        EclipseTaskTest.MemoryLogListener logListener = new EclipseTaskTest.MemoryLogListener(
+                Project.MSG_INFO);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+
+        assertName("a", "modules/a");
+        assertName("b", "modules/b");
+        assertName("Custom", "other");
+        String log = normalizeTimes(logListener.getLog());
+        assertContains(log, "INFO    Generating 3 Eclipse projects using up to 2 threads.\n");
+        assertContains(log, "INFO    Module \"a\" (0 ms): .project\n");
+        assertContains(log, "INFO    Module \"b\" (0 ms): .project\n");
+        assertContains(log, "INFO    Module \"custom\" (0 ms): .project\n");
+        assertContains(log, "INFO    Generated 3 Eclipse projects in 0 ms, "
+                + "3 files changed.\n");
+
+        task = createTask();
+        logListener = new EclipseTaskTest.MemoryLogListener(Project.MSG_INFO);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+
+        log = normalizeTimes(logListener.getLog());
+        assertContains(log, "INFO    Module \"a\" (0 ms): up-to-date\n");
+        assertContains(log, "INFO    Module \"b\" (0 ms): up-to-date\n");
+        assertContains(log, "INFO    Module \"custom\" (0 ms): up-to-date\n");
+        assertContains(log, "INFO    Generated 3 Eclipse projects in 0 ms, "
+                + "0 files changed.\n");
+    }
+
+    /**
+     * Tests that the attribute <tt>name</tt> is not accepted in the shared element
+     * <tt>project</tt>:
+     * 
+     * <pre>
+     *   &lt;eclipseworkspace&gt;
+     *     &lt;dirset dir=&quot;modules&quot; includes=&quot;*&quot; /&gt;
+     *     &lt;project name=&quot;Same&quot; /&gt;
+     *   &lt;/eclipseworkspace&gt;
+     * </pre>
+     */
+    public void testExecuteWithNamedProjectElement() {
+        EclipseWorkspaceTask task = new EclipseWorkspaceTask();
+        task.setProject(createProject());
+        task.addDirSet(createDirSet(task.getProject()));
+        task.createProject().setName("Same");
+        try {
+            task.execute();
+            fail("The shared project name was accepted.");
+        } catch (BuildException exception) {
+        }
+        assertFalse(new File(directory, "modules/a/.project").exists());
+    }
+
+    /**
+     * Tests that the attributes <tt>outputrefid</tt> and <tt>argfile</tt> are not
+     * accepted in the shared element <tt>classpath</tt>:
+     * 
+     * <pre>
+     *   &lt;eclipseworkspace&gt;
+     *     &lt;dirset dir=&quot;modules&quot; includes=&quot;*&quot; /&gt;
+     *     &lt;classpath outputrefid=&quot;libraries&quot; /&gt;
+     *   &lt;/eclipseworkspace&gt;
+     * </pre>
+     * 
+     * and the same with <tt>argfile=&quot;classpath.args&quot;</tt>.
+     */
+    public void testExecuteWithPublishingClassPathElement() {
+        for (int i = 0; i != 2; ++i) {
+            EclipseWorkspaceTask task = new EclipseWorkspaceTask();
+            task.setProject(createProject());
+            task.addDirSet(createDirSet(task.getProject()));
+            ClassPathElement classPath = task.createClassPath();
+            if (i == 0)
+                classPath.setOutputRefid("libraries");
+            else
+                classPath.setArgFile(new File(directory, "classpath.args"));
+            try {
+                task.execute();
+                fail("The shared publishing of libraries was accepted.");
+            } catch (BuildException exception) {
+            }
+            assertFalse(new File(directory, "modules/a/.classpath").exists());
+        }
+    }
+
+    /**
+     * Tests running a module job with a task failing by an unexpected exception,
+     * expecting the failure to be stored as a BuildException instead of being thrown.
+     */
+    public void testRunModuleJobWithRuntimeException() {
+        EclipseWorkspaceTask.ModuleJob job = new EclipseWorkspaceTask.ModuleJob("a",
+                new EclipseTask() {
+
+                    public void execute() {
+                        throw new IllegalStateException("Unexpected.");
+                    }
+
+                });
+        job.run();
+        assertNotNull(job.failure);
+        assertTrue(job.failure.getCause() instanceof IllegalStateException);
+    }
+
+    private EclipseWorkspaceTask createTask() {
+        EclipseWorkspaceTask task = new EclipseWorkspaceTask();
+        task.setProject(createProject());
+        task.setThreadCount(2);
+        task.addDirSet(createDirSet(task.getProject()));
+        ModuleElement module = task.createModule();
+        module.setDir(new File(directory, "other"));
+        module.setName("custom");
+        module.createProject().setName("Custom");
+        task.createProject();
+        return task;
+    }
+
+    private Project createProject() {
+        Project project = new Project();
+        project.init();
+        project.setBaseDir(directory);
+        project.setUserProperty("ant.project.name", "workspace");
+        return project;
+    }
+
+    private DirSet createDirSet(Project project) {
+        DirSet dirSet = new DirSet();
+        dirSet.setProject(project);
+        dirSet.setDir(new File(directory, "modules"));
+        dirSet.setIncludes("*");
+        return dirSet;
+    }
+
+    private void assertName(String expected, String module) throws IOException {
+        String content = new String(WorkspacePreferences.readFile(new File(directory,
+                module + "/.project")), "UTF-8");
+        assertContains(content, "<name>" + expected + "</name>");
+    }
+
+    private static void assertContains(String actual, String expected) {
+        if (actual.indexOf(expected) < 0)
+            fail("The content \"" + actual + "\" does not contain \"" + expected + "\".");
+    }
+
+    private static String normalizeTimes(String log) {
+        return log.replaceAll("\\d+ ms", "0 ms");
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i != files.length; ++i)
+            if (files[i].isDirectory())
+                deleteDirectory(files[i]);
+            else
+                files[i].delete();
+        directory.delete();
+    }
+
+}
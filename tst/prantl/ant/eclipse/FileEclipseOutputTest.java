@@ -0,0 +1,450 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.Project;
+
+/**
+ * Test fixture with unit test cases for the class <tt>FileEclipseOutput</tt>, which
+ * write the files into a temporary directory.
+ * 
+ * @see FileEclipseOutput
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class FileEclipseOutputTest extends TestCase {
+
+    private File directory;
+
+    /**
+     * Creates a new instance of the test fixture. Default constructor.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public FileEclipseOutputTest() {
+    }
+
+    /**
+     * Creates an empty temporary directory to be used as the base directory of the
+     * project.
+     * 
+     * @throws Exception
+     *         If the directory cannot be created.
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("ant-eclipse", ".test");
+        directory.delete();
+        assertTrue(directory.mkdir());
+    }
+
+    /**
+     * Deletes the temporary directory with all its content.
+     * 
+     * @throws Exception
+     *         If the directory cannot be deleted.
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        deleteDirectory(directory);
+    }
+
+    /**
+     * Tests executing two tasks with the following configuration, expecting the second
+     * one to find the file .project up-to-date:
+     * 
+     * <pre>
+     *   &lt;eclipse&gt;
+     *     &lt;project /&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteTwiceWithProjectElement() throws Exception {
+        EclipseTask task = createTask();
+        task.createProject();
+        task.execute();
+        assertTrue(new File(directory, ".project").isFile());
+        assertTrue(new File(directory, ".settings/.ant-eclipse.state").isFile());
+
+        task = createTask();
+        task.createProject();
+        EclipseTaskTest.MemoryLogListener logListener = new EclipseTaskTest.MemoryLogListener(
+                Project.MSG_INFO);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+
+        assertEquals("WARNING There were no settings found.\n"
+                + "WARNING The project definition is up-to-date.\n"
+                + "WARNING There was no description of a classpath found.\n", logListener
+                .getLog());
+    }
+
+    /**
+     * Tests that a fingerprint passed to an up-to-date check is stored only after the
+     * file has been updated.
+     * 
+     * @throws Exception
+     *         If reading or writing the files fails.
+     */
+    public void testRecordFingerprintAfterUpdate() throws Exception {
+        byte[] content = "<projectDescription />".getBytes("UTF-8");
+        createFile(".project", content);
+        FileEclipseOutput output = createOutput();
+        assertFalse(output.isProjectUpToDate("1"));
+        output.close();
+        assertFalse(new File(directory, ".settings/.ant-eclipse.state").exists());
+
+        output = createOutput();
+        assertFalse(output.isProjectUpToDate("1"));
+        assertEquals(EclipseOutput.UNCHANGED, output.updateProject(content));
+        output.close();
+
+        output = createOutput();
+        assertTrue(output.isProjectUpToDate("1"));
+        assertFalse(output.isProjectUpToDate("2"));
+    }
+
+    /**
+     * Tests that a failure of writing in the middle of the content leaves the original
+     * file untouched and deletes the temporary file.
+     * 
+     * @throws Exception
+     *         If reading or writing the files fails.
+     */
+    public void testReplaceFileFailingInTheMiddle() throws Exception {
+        File target = createFile(".project", "original".getBytes("UTF-8"));
+        File temporary = new File(directory, ".project.tmp");
+        // the stream fails after the first half of the content has been written
+        OutputStream failing = new FilterOutputStream(new FileOutputStream(temporary)) {
+
+            private int written = 0;
+
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                if (written + length > 4)
+                    throw new IOException("The disk is full.");
+                out.write(buffer, offset, length);
+                written += length;
+            }
+
+        };
+        FileEclipseOutput.ReplacingOutputStream output = new FileEclipseOutput.ReplacingOutputStream(
+                failing, temporary, target);
+        output.write("chan".getBytes("UTF-8"));
+        output.flush();
+        assertEquals(4, temporary.length());
+        try {
+            output.write("ged".getBytes("UTF-8"));
+            fail("The failing write succeeded.");
+        } catch (IOException exception) {
+        } finally {
+            output.close();
+        }
+
+        assertEquals("original", readFile(target));
+        assertFalse(temporary.exists());
+        assertEquals(Arrays.asList(new String[] { ".project" }), Arrays.asList(directory
+                .list()));
+    }
+
+    /**
+     * Tests comparing files with equal and different content, including content longer
+     * than the default buffer and content which is a prefix of the other one.
+     * 
+     * @throws Exception
+     *         If reading or writing the files fails.
+     */
+    public void testCompareFile() throws Exception {
+        FileEclipseOutput output = createOutput();
+        File file = new File(directory, "test");
+        byte[] content = "abcdef".getBytes("UTF-8");
+        assertEquals(EclipseOutput.CREATED, output.compareFile(file, content));
+        createFile("test", content);
+        assertEquals(EclipseOutput.UNCHANGED, output.compareFile(file, content));
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, "abcdeg"
+                .getBytes("UTF-8")));
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, "abcde"
+                .getBytes("UTF-8")));
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, "abcdefg"
+                .getBytes("UTF-8")));
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, new byte[0]));
+
+        // the buffer of 8192 bytes used so far has to grow for the longer file
+        byte[] longContent = new byte[3 * 8192 + 1];
+        for (int i = 0; i != longContent.length; ++i)
+            longContent[i] = (byte) i;
+        createFile("test", longContent);
+        assertEquals(EclipseOutput.UNCHANGED, output.compareFile(file, longContent));
+        byte[] changed = (byte[]) longContent.clone();
+        ++changed[changed.length - 1];
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, changed));
+        byte[] prefix = new byte[longContent.length - 1];
+        System.arraycopy(longContent, 0, prefix, 0, prefix.length);
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, prefix));
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, content));
+        createFile("test", prefix);
+        assertEquals(EclipseOutput.CHANGED, output.compareFile(file, longContent));
+        assertEquals(EclipseOutput.UNCHANGED, output.compareFile(file, prefix));
+    }
+
+    /**
+     * Tests writing the file .classpath piece by piece, expecting an unchanged or a
+     * dropped content to leave the file untouched and a failing writer to leave the file
+     * and no temporary file behind.
+     * 
+     * @throws Exception
+     *         If reading or writing the files fails.
+     */
+    public void testUpdateClassPathWithWriter() throws Exception {
+        FileEclipseOutput output = createOutput();
+        final byte[] content = new byte[3 * 8192 + 1];
+        for (int i = 0; i != content.length; ++i)
+            content[i] = (byte) i;
+        EclipseOutput.ContentWriter writer = new EclipseOutput.ContentWriter() {
+
+            boolean write(OutputStream stream) throws IOException {
+                stream.write(content, 0, 8192);
+                stream.write(content, 8192, content.length - 8192);
+                return true;
+            }
+
+        };
+        File file = new File(directory, ".classpath");
+        assertEquals(EclipseOutput.CREATED, output.updateClassPath(writer));
+        assertTrue(Arrays.equals(content, WorkspacePreferences.readFile(file)));
+        long modified = file.lastModified() - 10000;
+        file.setLastModified(modified);
+        assertEquals(EclipseOutput.UNCHANGED, output.updateClassPath(writer));
+        assertEquals(modified, file.lastModified());
+        assertEquals(Arrays.asList(new String[] { ".classpath" }), Arrays.asList(directory
+                .list()));
+
+        assertEquals(EclipseOutput.UNCHANGED, output
+                .updateClassPath(new EclipseOutput.ContentWriter() {
+
+                    boolean write(OutputStream stream) throws IOException {
+                        stream.write("<?xml".getBytes("UTF-8"));
+                        return false;
+                    }
+
+                }));
+        assertEquals(modified, file.lastModified());
+        assertEquals(Arrays.asList(new String[] { ".classpath" }), Arrays.asList(directory
+                .list()));
+
+        ++content[content.length - 1];
+        assertEquals(EclipseOutput.CHANGED, output.updateClassPath(writer));
+        assertTrue(Arrays.equals(content, WorkspacePreferences.readFile(file)));
+
+        try {
+            output.updateClassPath(new EclipseOutput.ContentWriter() {
+
+                boolean write(OutputStream stream) throws IOException {
+                    stream.write("<?xml".getBytes("UTF-8"));
+                    throw new IllegalStateException("The generation failed.");
+                }
+
+            });
+            fail("The failing writer succeeded.");
+        } catch (IllegalStateException exception) {
+        }
+        assertTrue(Arrays.equals(content, WorkspacePreferences.readFile(file)));
+        assertEquals(Arrays.asList(new String[] { ".classpath" }), Arrays.asList(directory
+                .list()));
+    }
+
+    /**
+     * Tests sharing preferences of two projects through a store, expecting the stored
+     * copy to be linked if hard links are supported, a copy changed in place to be
+     * replaced and the projects with the changed content to be updated.
+     * 
+     * @throws Exception
+     *         If reading or writing the files fails.
+     */
+    public void testUpdateSharedPreferencesWithLink() throws Exception {
+        File store = new File(directory, "store");
+        byte[] content = "eclipse.preferences.version=1\n".getBytes("UTF-8");
+        FileEclipseOutput first = createOutput(new File(directory, "a"));
+        FileEclipseOutput second = createOutput(new File(directory, "b"));
+        assertEquals(EclipseOutput.CREATED, first.updateSharedPreferences("test",
+                content, store));
+        assertEquals(EclipseOutput.CREATED, second.updateSharedPreferences("test",
+                content, store));
+        File firstFile = new File(directory, "a/.settings/test.prefs");
+        File secondFile = new File(directory, "b/.settings/test.prefs");
+        assertEquals("eclipse.preferences.version=1\n", readFile(firstFile));
+        assertEquals("eclipse.preferences.version=1\n", readFile(secondFile));
+        File[] stored = store.listFiles();
+        assertEquals(1, stored.length);
+        assertEquals("eclipse.preferences.version=1\n", readFile(stored[0]));
+        if (!FileEclipseOutput.canLink())
+            return;
+
+        // a change in place, like Eclipse does it, is seen by all linked projects
+        FileOutputStream output = new FileOutputStream(firstFile);
+        try {
+            output.write("eclipse.preferences.version=2\n".getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+        assertEquals("eclipse.preferences.version=2\n", readFile(secondFile));
+        assertEquals("eclipse.preferences.version=2\n", readFile(stored[0]));
+
+        // the changed copy of the same length is not trusted, it is replaced
+        FileEclipseOutput third = createOutput(new File(directory, "c"));
+        assertEquals(EclipseOutput.CREATED, third.updateSharedPreferences("test",
+                content, store));
+        assertEquals("eclipse.preferences.version=1\n", readFile(new File(directory,
+                "c/.settings/test.prefs")));
+        assertEquals("eclipse.preferences.version=1\n", readFile(stored[0]));
+        assertEquals(EclipseOutput.CHANGED, first.updateSharedPreferences("test",
+                content, store));
+        assertEquals("eclipse.preferences.version=1\n", readFile(firstFile));
+        assertEquals(1, store.listFiles().length);
+    }
+
+    /**
+     * Tests sharing preferences through a store which cannot be created, expecting the
+     * content to be copied into the project.
+     * 
+     * @throws Exception
+     *         If reading or writing the files fails.
+     */
+    public void testUpdateSharedPreferencesWithCopy() throws Exception {
+        File store = createFile("store", new byte[0]);
+        byte[] content = "eclipse.preferences.version=1\n".getBytes("UTF-8");
+        FileEclipseOutput output = createOutput(new File(directory, "a"));
+        assertEquals(EclipseOutput.CREATED, output.updateSharedPreferences("test",
+                content, store));
+        assertEquals(EclipseOutput.UNCHANGED, output.updateSharedPreferences("test",
+                content, store));
+        assertEquals("eclipse.preferences.version=1\n", readFile(new File(directory,
+                "a/.settings/test.prefs")));
+        assertTrue(store.isFile());
+    }
+
+    /**
+     * Tests executing three tasks with the following configuration, turning the
+     * attribute <tt>link</tt> on and off, expecting the file with the same content to be
+     * linked and unlinked, if hard links are supported:
+     * 
+     * <pre>
+     *   &lt;eclipse reproducible=&quot;true&quot;&gt;
+     *     &lt;settings storedir=&quot;store&quot;&gt;
+     *       &lt;resources encoding=&quot;UTF-8&quot; link=&quot;...&quot; /&gt;
+     *     &lt;/settings&gt;
+     *   &lt;/eclipse&gt;
+     * </pre>
+     * 
+     * @throws Exception
+     *         If the task execution fails.
+     */
+    public void testExecuteWithLinkSwitched() throws Exception {
+        File file = new File(directory, ".settings/org.eclipse.core.resources.prefs");
+        createSettingsTask(false).execute();
+        assertTrue(file.isFile());
+        assertFalse(FileEclipseOutput.isLinked(file));
+
+        EclipseTask task = createSettingsTask(true);
+        EclipseTaskTest.MemoryLogListener logListener = new EclipseTaskTest.MemoryLogListener(
+                Project.MSG_INFO);
+        task.getProject().addBuildListener(logListener);
+        task.execute();
+        assertTrue(logListener.getLog().indexOf("preferences for "
+                + "\"org.eclipse.core.resources\" were unchanged") >= 0);
+        if (!FileEclipseOutput.canLink())
+            return;
+        assertTrue(FileEclipseOutput.isLinked(file));
+
+        createSettingsTask(false).execute();
+        assertFalse(FileEclipseOutput.isLinked(file));
+    }
+
+    private EclipseTask createTask() {
+        return createTask(directory);
+    }
+
+    private EclipseTask createTask(File baseDirectory) {
+        EclipseTask task = new EclipseTask();
+        task.setProject(new Project());
+        task.getProject().init();
+        task.getProject().setBaseDir(baseDirectory);
+        task.getProject().setUserProperty("ant.project.name", "eclipse");
+        return task;
+    }
+
+    private EclipseTask createSettingsTask(boolean link) {
+        EclipseTask task = createTask();
+        // the content must not differ by the time stamp
+        task.setReproducible(true);
+        SettingsElement settings = task.createSettings();
+        settings.setStoreDir(new File(directory, "store"));
+        OrgEclipseCoreResourcesPreferencesElement resources = settings.createResources();
+        resources.setEncoding("UTF-8");
+        resources.setLink(link);
+        return task;
+    }
+
+    private FileEclipseOutput createOutput() {
+        return new FileEclipseOutput(createTask());
+    }
+
+    private FileEclipseOutput createOutput(File baseDirectory) {
+        assertTrue(baseDirectory.mkdirs());
+        return new FileEclipseOutput(createTask(baseDirectory));
+    }
+
+    private File createFile(String name, byte[] content) throws IOException {
+        File file = new File(directory, name);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static String readFile(File file) throws IOException {
+        return new String(WorkspacePreferences.readFile(file), "UTF-8");
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i != files.length; ++i)
+            if (files[i].isDirectory())
+                deleteDirectory(files[i]);
+            else
+                files[i].delete();
+        directory.delete();
+    }
+
+}
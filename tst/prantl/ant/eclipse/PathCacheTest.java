@@ -0,0 +1,197 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.types.FileSet;
+import org.apache.tools.ant.types.Path;
+import org.apache.tools.ant.types.Reference;
+
+/**
+ * Test fixture with unit test cases for the class <tt>PathCache</tt>, which scan
+ * libraries in a temporary directory.
+ * 
+ * @see PathCache
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class PathCacheTest extends TestCase {
+
+    private File directory;
+
+    /**
+     * Creates a new instance of the test fixture. Default constructor.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public PathCacheTest() {
+    }
+
+    /**
+     * Creates an empty temporary directory for the libraries.
+     * 
+     * @throws Exception
+     *         If the directory cannot be created.
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("ant-eclipse", ".test");
+        directory.delete();
+        assertTrue(directory.mkdir());
+    }
+
+    /**
+     * Deletes the temporary directory with all its content.
+     * 
+     * @throws Exception
+     *         If the directory cannot be deleted.
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        deleteDirectory(directory);
+    }
+
+    /**
+     * Tests listing a path with a fileset, expecting the list to be taken from the cache
+     * also for a copy of the path made for a sub-project, like the tasks <tt>ant</tt>
+     * and <tt>subant</tt> do it.
+     * 
+     * @throws Exception
+     *         If creating the libraries fails.
+     */
+    public void testListCopiedPath() throws Exception {
+        createFile("lib/a.jar");
+        createFile("lib/sub/b.jar");
+        Project project = createProject();
+        Path path = createPath(project);
+        project.addReference("libraries", path);
+        PathCache cache = PathCache.getInstance(project);
+        EclipseTask task = createTask(project);
+        String[] items = cache.list(task, new Reference("libraries"));
+        assertEquals(Arrays.asList(new String[] {
+                new File(directory, "lib/a.jar").getAbsolutePath(),
+                new File(directory, "lib/sub/b.jar").getAbsolutePath() }), Arrays
+                .asList(items));
+        assertSame(items, cache.list(task, new Reference("libraries")));
+
+        Project subProject = createProject();
+        subProject.addReference("libraries", path.clone());
+        subProject.addReference("ant-eclipse.pathcache", cache);
+        assertSame(cache, PathCache.getInstance(subProject));
+        EclipseTask subTask = createTask(subProject);
+        assertSame(items, cache.list(subTask, new Reference("libraries")));
+
+        // the same name of a path with a different definition is not confused
+        Path other = createPath(subProject);
+        other.createPathElement().setLocation(new File(directory, "c.jar"));
+        subProject.addReference("libraries", other);
+        assertEquals(3, cache.list(subTask, new Reference("libraries")).length);
+    }
+
+    /**
+     * Tests that a cached list is invalidated when a library is added into a new
+     * subdirectory, when a path which was empty gets an item and when a library is
+     * added without changing the time stamp of the directory.
+     * 
+     * @throws Exception
+     *         If creating the libraries fails.
+     */
+    public void testInvalidateCachedPath() throws Exception {
+        createFile("lib/sub/a.jar");
+        File empty = new File(directory, "empty");
+        assertTrue(empty.mkdir());
+        // the time stamps are moved back, so that the changes below are always noticed
+        File lib = new File(directory, "lib");
+        lib.setLastModified(lib.lastModified() - 10000);
+        empty.setLastModified(empty.lastModified() - 10000);
+        Project project = createProject();
+        project.addReference("libraries", createPath(project));
+        FileSet fileSet = new FileSet();
+        fileSet.setProject(project);
+        fileSet.setDir(empty);
+        Path emptyPath = new Path(project);
+        emptyPath.addFileset(fileSet);
+        project.addReference("empty", emptyPath);
+        PathCache cache = PathCache.getInstance(project);
+        EclipseTask task = createTask(project);
+        String[] items = cache.list(task, new Reference("libraries"));
+        assertEquals(1, items.length);
+        assertEquals(0, cache.list(task, new Reference("empty")).length);
+        assertSame(items, cache.list(task, new Reference("libraries")));
+
+        createFile("lib/other/b.jar");
+        createFile("empty/c.jar");
+        assertEquals(2, cache.list(task, new Reference("libraries")).length);
+        assertEquals(1, cache.list(task, new Reference("empty")).length);
+
+        // a file added within the granularity of the time stamps is noticed too
+        long modified = lib.lastModified();
+        createFile("lib/c.jar");
+        lib.setLastModified(modified);
+        assertEquals(3, cache.list(task, new Reference("libraries")).length);
+    }
+
+    private Project createProject() {
+        Project project = new Project();
+        project.init();
+        project.setBaseDir(directory);
+        return project;
+    }
+
+    private EclipseTask createTask(Project project) {
+        EclipseTask task = new EclipseTask();
+        task.setProject(project);
+        return task;
+    }
+
+    private Path createPath(Project project) {
+        FileSet fileSet = new FileSet();
+        fileSet.setProject(project);
+        fileSet.setDir(new File(directory, "lib"));
+        fileSet.setIncludes("**/*.jar");
+        Path path = new Path(project);
+        path.addFileset(fileSet);
+        return path;
+    }
+
+    private void createFile(String name) throws IOException {
+        File file = new File(directory, name);
+        file.getParentFile().mkdirs();
+        new FileOutputStream(file).close();
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i != files.length; ++i)
+            if (files[i].isDirectory())
+                deleteDirectory(files[i]);
+            else
+                files[i].delete();
+        directory.delete();
+    }
+
+}
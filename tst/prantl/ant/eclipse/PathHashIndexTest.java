@@ -0,0 +1,97 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import junit.framework.TestCase;
+
+/**
+ * Test fixture with unit test cases for the class <tt>PathHashIndex</tt>.
+ * 
+ * @see PathHashIndex
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class PathHashIndexTest extends TestCase {
+
+    /**
+     * Creates a new instance of the test fixture. Default constructor.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public PathHashIndexTest() {
+    }
+
+    /**
+     * Tests recording paths in more elements, expecting the last element of every path
+     * to be returned only for its first occurrence and the paths to be computed again
+     * only for the other occurrences with the same hash.
+     */
+    public void testPutAndGetLast() {
+        final String[][] elements = { { "a.jar", "b.jar" }, { "a.jar" } };
+        final int[] count = new int[1];
+        PathHashIndex index = new PathHashIndex(3, new PathHashIndex.Paths() {
+
+            String getPath(int element, int item) {
+                ++count[0];
+                return elements[element][item];
+            }
+
+        });
+        long first = PathHashIndex.hash("a.jar");
+        long second = PathHashIndex.hash("b.jar");
+        assertTrue(index.put(first, "a.jar", 0, 0));
+        assertTrue(index.put(second, "b.jar", 0, 1));
+        assertEquals(0, count[0]);
+        assertFalse(index.put(first, "a.jar", 1, 0));
+        assertEquals(1, count[0]);
+        assertEquals(2, index.size());
+        assertEquals(1, index.getLast(first, "a.jar", 0, 0));
+        assertEquals(0, index.getLast(second, "b.jar", 0, 1));
+        assertEquals(1, count[0]);
+        assertEquals(-1, index.getLast(first, "a.jar", 1, 0));
+        assertEquals(2, count[0]);
+        assertFalse(index.contains(PathHashIndex.hash("c.jar"), "c.jar"));
+        assertTrue(index.contains(first, "a.jar"));
+    }
+
+    /**
+     * Tests recording different paths with the same hash, expecting them to be kept as
+     * distinct paths.
+     */
+    public void testPutWithSameHash() {
+        final String[][] elements = { { "a.jar" }, { "b.jar" }, { "b.jar" } };
+        PathHashIndex index = new PathHashIndex(2, new PathHashIndex.Paths() {
+
+            String getPath(int element, int item) {
+                return elements[element][item];
+            }
+
+        });
+        assertTrue(index.put(1, "a.jar", 0, 0));
+        assertTrue(index.put(1, "b.jar", 1, 0));
+        assertFalse(index.put(1, "b.jar", 2, 0));
+        assertEquals(2, index.size());
+        assertEquals(0, index.getLast(1, "a.jar", 0, 0));
+        assertEquals(2, index.getLast(1, "b.jar", 1, 0));
+        assertEquals(-1, index.getLast(1, "b.jar", 2, 0));
+        assertFalse(index.contains(1, "c.jar"));
+    }
+
+}
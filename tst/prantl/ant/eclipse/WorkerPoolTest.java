@@ -0,0 +1,120 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.apache.tools.ant.BuildException;
+
+/**
+ * Test fixture with unit test cases for the class <tt>WorkerPool</tt>.
+ * 
+ * @see WorkerPool
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class WorkerPoolTest extends TestCase {
+
+    /**
+     * Creates a new instance of the test fixture. Default constructor.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public WorkerPoolTest() {
+    }
+
+    /**
+     * Tests running more jobs than threads, expecting every job to run once on one of
+     * the worker threads.
+     */
+    public void testRunWithMoreThreads() {
+        final String[] threads = new String[50];
+        final int[] runs = new int[threads.length];
+        Runnable[] jobs = new Runnable[threads.length];
+        for (int i = 0; i != jobs.length; ++i) {
+            final int index = i;
+            jobs[i] = new Runnable() {
+
+                public void run() {
+                    threads[index] = Thread.currentThread().getName();
+                    ++runs[index];
+                }
+
+            };
+        }
+        WorkerPool.run(jobs, 4);
+
+        HashSet names = new HashSet();
+        for (int i = 0; i != jobs.length; ++i) {
+            assertEquals(1, runs[i]);
+            assertTrue(threads[i].startsWith("ant-eclipse-worker-"));
+            names.add(threads[i]);
+        }
+        assertTrue(names.size() <= 4);
+    }
+
+    /**
+     * Tests running jobs failing by an exception and by an error, expecting the failure
+     * of the first of them in the list to be rethrown after all jobs have run.
+     */
+    public void testRunWithFailingJobs() {
+        final boolean[] finished = new boolean[3];
+        final Error error = new LinkageError("Test");
+        Runnable[] jobs = new Runnable[] { new Runnable() {
+
+            public void run() {
+                finished[0] = true;
+                throw error;
+            }
+
+        }, new Runnable() {
+
+            public void run() {
+                finished[1] = true;
+                throw new BuildException("Test");
+            }
+
+        }, new Runnable() {
+
+            public void run() {
+                finished[2] = true;
+            }
+
+        } };
+        try {
+            WorkerPool.run(jobs, 2);
+            fail("The failure of the job was not reported.");
+        } catch (BuildException exception) {
+            assertSame(error, exception.getCause());
+        }
+        for (int i = 0; i != finished.length; ++i)
+            assertTrue(finished[i]);
+
+        try {
+            WorkerPool.run(new Runnable[] { jobs[2], jobs[1] }, 2);
+            fail("The failure of the job was not reported.");
+        } catch (BuildException exception) {
+            assertEquals("Test", exception.getMessage());
+        }
+    }
+
+}
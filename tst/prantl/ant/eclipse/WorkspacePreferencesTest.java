@@ -0,0 +1,162 @@
+// Copyright 2005-2006 Ferdinand Prantl <prantl@users.sourceforge.net>
+// Copyright 2001-2004 The Apache Software Foundation
+// All rights reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//
+// See http://ant-eclipse.sourceforge.net for the most recent version
+// and more information.
+
+package prantl.ant.eclipse;
+
+import java.io.File;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+/**
+ * Test fixture with unit test cases for the class <tt>WorkspacePreferences</tt>, which
+ * write the hoisted variables into a temporary directory.
+ * 
+ * @see WorkspacePreferences
+ * @since Ant-Eclipse 1.0
+ * @author Ferdinand Prantl &lt;prantl@users.sourceforge.net&gt;
+ */
+public class WorkspacePreferencesTest extends TestCase {
+
+    private File directory;
+
+    /**
+     * Creates a new instance of the test fixture. Default constructor.
+     * 
+     * @since Ant-Eclipse 1.0
+     */
+    public WorkspacePreferencesTest() {
+    }
+
+    /**
+     * Creates a temporary directory for the workspace.
+     * 
+     * @throws Exception
+     *         If the directory cannot be created.
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        directory = File.createTempFile("ant-eclipse", ".test");
+        directory.delete();
+        assertTrue(directory.mkdirs());
+    }
+
+    /**
+     * Deletes the temporary directory with all its content.
+     * 
+     * @throws Exception
+     *         If the directory cannot be deleted.
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        deleteDirectory(directory);
+    }
+
+    /**
+     * Tests hoisting the variables of two projects sharing only the variable <tt>a</tt>
+     * into new preferences of the workspace and into existing ones with escaped names,
+     * continuation lines and other separators, expecting only the real variable
+     * <tt>a</tt> to be replaced once.
+     * 
+     * @throws Exception
+     *         If reading or writing the preferences fails.
+     */
+    public void testWriteWithPartiallySharedVariables() throws Exception {
+        Vector settings = new Vector();
+        settings.addElement(createSettings("1"));
+        settings.addElement(createSettings("2"));
+        WorkspacePreferences preferences = new WorkspacePreferences(settings);
+        assertEquals(1, preferences.getPackageNames().length);
+        assertEquals(1, preferences.getVariables("test").size());
+        assertEquals("1", preferences.getVariables("test").get("a"));
+
+        assertEquals(EclipseOutput.CREATED, preferences.write(directory, "test"));
+        File file = new File(directory,
+                ".metadata/.plugins/org.eclipse.core.runtime/.settings/test.prefs");
+        assertEquals("a=1\nant-eclipse.hoisted=a\n", new String(WorkspacePreferences.readFile(file), "UTF-8"));
+        assertEquals(EclipseOutput.UNCHANGED, preferences.write(directory, "test"));
+
+        String existing = "#a=comment\\\na\\=b=keep\nx=long\\\n  a=inside\n"
+                + " a = old\nc\\:d=keep\na:twice\nb=keep\n";
+        WorkspacePreferences.writeFile(file, existing.getBytes("UTF-8"));
+        assertEquals(EclipseOutput.CHANGED, preferences.write(directory, "test"));
+        assertEquals("#a=comment\\\na\\=b=keep\nx=long\\\n  a=inside\n"
+                + "a=1\nc\\:d=keep\nb=keep\nant-eclipse.hoisted=a\n", new String(
+                WorkspacePreferences.readFile(file), "UTF-8"));
+    }
+
+    /**
+     * Tests hoisting the variable <tt>b</tt> and later only the variable <tt>a</tt>,
+     * expecting the variable <tt>b</tt> to be removed from the preferences of the
+     * workspace, and hoisting nothing at last, expecting the variable <tt>a</tt> to be
+     * removed too, while the variable <tt>c</tt> not written by the task is kept.
+     * 
+     * @throws Exception
+     *         If reading or writing the preferences fails.
+     */
+    public void testWriteWithStaleVariables() throws Exception {
+        File file = new File(directory,
+                ".metadata/.plugins/org.eclipse.core.runtime/.settings/test.prefs");
+        WorkspacePreferences.writeFile(file, "c=keep\nb=2\n".getBytes("UTF-8"));
+        Vector settings = new Vector();
+        settings.addElement(createSettings("2"));
+        settings.addElement(createSettings("2"));
+        WorkspacePreferences preferences = new WorkspacePreferences(settings);
+        assertEquals(EclipseOutput.CHANGED, preferences.write(directory, "test"));
+        assertEquals("c=keep\nb=2\na=1\nant-eclipse.hoisted=a,b\n", new String(
+                WorkspacePreferences.readFile(file), "UTF-8"));
+
+        settings.setElementAt(createSettings("1"), 0);
+        preferences = new WorkspacePreferences(settings);
+        assertEquals(EclipseOutput.CHANGED, preferences.write(directory, "test"));
+        assertEquals("c=keep\na=1\nant-eclipse.hoisted=a\n", new String(
+                WorkspacePreferences.readFile(file), "UTF-8"));
+
+        settings.setElementAt(null, 0);
+        preferences = new WorkspacePreferences(settings);
+        assertEquals(0, preferences.getPackageNames().length);
+        String[] names = preferences.getPackageNames(directory);
+        assertEquals(1, names.length);
+        assertEquals("test", names[0]);
+        assertEquals(EclipseOutput.CHANGED, preferences.write(directory, "test"));
+        assertEquals("c=keep\n", new String(WorkspacePreferences.readFile(file),
+                "UTF-8"));
+        assertEquals(0, preferences.getPackageNames(directory).length);
+    }
+
+    private static SettingsElement createSettings(String value) {
+        SettingsElement settings = new SettingsElement();
+        GeneralPreferencesElement preferences = settings.createGeneral();
+        preferences.setName("test");
+        preferences.internalCreateVariable("a", "1");
+        preferences.internalCreateVariable("b", value);
+        return settings;
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i != files.length; ++i)
+            if (files[i].isDirectory())
+                deleteDirectory(files[i]);
+            else
+                files[i].delete();
+        directory.delete();
+    }
+
+}